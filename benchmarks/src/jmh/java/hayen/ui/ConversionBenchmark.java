@@ -0,0 +1,102 @@
+package hayen.ui;
+
+import hayen.color.ColorConversion;
+import hayen.color.HSVAModel;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.*;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the conversions between HSB and RGB, one color at a time and over a batch of colors
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ConversionBenchmark {
+
+	private static final int BATCH = 4096;
+
+	private final float[] hue = new float[BATCH], saturation = new float[BATCH], value = new float[BATCH];
+	private final int[] argb = new int[BATCH], converted = new int[BATCH];
+	private final float[] hsbInterleaved = new float[3*BATCH];
+	private final int[] rgb = new int[3];
+	private final float[] hsb = new float[3];
+	private int index;
+
+	@Setup
+	public void setup(){
+		Random random = new Random(42);
+		for (int i = 0; i < BATCH; i++) {
+			hue[i] = random.nextFloat();
+			saturation[i] = random.nextFloat();
+			value[i] = random.nextFloat();
+			argb[i] = random.nextInt();
+		}
+	}
+
+	private int next(){
+		return index = (index + 1) & (BATCH - 1);
+	}
+
+	@Benchmark
+	public int hsbToRgb(){
+		int i = next();
+		return ColorWheel.HSBtoRGB(hue[i], saturation[i], value[i], rgb);
+	}
+	@Benchmark
+	public int hsbToRgbAwt(){
+		int i = next();
+		return Color.HSBtoRGB(hue[i], saturation[i], value[i]);
+	}
+	@Benchmark
+	public float[] rgbToHsbAwt(){
+		int c = argb[next()];
+		return Color.RGBtoHSB((c >>> 16) & 0xFF, (c >>> 8) & 0xFF, c & 0xFF, hsb);
+	}
+	@Benchmark
+	public long rgbToHsbPacked(){
+		return HSVAModel.packARGB(argb[next()]);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void hsbToRgbBulk(Blackhole bh){
+		for (int i = 0; i < BATCH; i++)
+			bh.consume(ColorWheel.HSBtoRGB(hue[i], saturation[i], value[i], null));
+	}
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void hsbToRgbAwtBulk(Blackhole bh){
+		for (int i = 0; i < BATCH; i++)
+			bh.consume(Color.HSBtoRGB(hue[i], saturation[i], value[i]));
+	}
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void rgbToHsbAwtBulk(Blackhole bh){
+		for (int i = 0; i < BATCH; i++) {
+			int c = argb[i];
+			bh.consume(Color.RGBtoHSB((c >>> 16) & 0xFF, (c >>> 8) & 0xFF, c & 0xFF, hsb));
+		}
+	}
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void rgbToHsbPackedBulk(Blackhole bh){
+		for (int i = 0; i < BATCH; i++)
+			bh.consume(HSVAModel.packARGB(argb[i]));
+	}
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public int[] planarToRgb(){
+		ColorConversion.toRGB(hue, saturation, value, 0, converted, 0, BATCH);
+		return converted;
+	}
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public float[] rgbToInterleaved(){
+		ColorConversion.toHSB(argb, 0, hsbInterleaved, 0, BATCH);
+		return hsbInterleaved;
+	}
+}
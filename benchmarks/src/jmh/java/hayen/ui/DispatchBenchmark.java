@@ -0,0 +1,45 @@
+package hayen.ui;
+
+import hayen.event.ColorChangeListener;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a color change, from the setter of the <code>ColorWheel</code> to its <code>ColorChangeListener</code>s
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DispatchBenchmark {
+
+	@Param({"0", "1", "8", "64"})
+	public int listeners;
+	@Param({"false", "true"})
+	public boolean metrics;
+
+	private ColorWheel wheel;
+	private int argb;
+	private volatile Object received;
+
+	@Setup
+	public void setup(){
+		WheelMetrics.setEnabled(metrics);
+		wheel = new ColorWheel();
+		for (int i = 0; i < listeners; i++) {
+			ColorChangeListener l = e -> received = e.color;
+			wheel.addColorChangeListener(l);
+		}
+	}
+
+	@TearDown
+	public void tearDown(){
+		WheelMetrics.setEnabled(false);
+		WheelMetrics.reset();
+	}
+
+	@Benchmark
+	public void setColorRGB(){
+		wheel.setColorRGB(argb = (argb + 0x010203) | 0xFF000000);
+	}
+}
@@ -0,0 +1,55 @@
+package hayen.ui;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Check that the fast rendering mode stays within one unit per channel of the exact rendering, over every pixel of wheels of many sizes, slider angles
+ * and <em>value</em>s.</br>
+ * Run by <code>gradle :benchmarks:checkFastRendering</code>, which fails if the bound is exceeded. <code>FastRenderingTest</code> checks a few of these cases
+ * on every <code>gradle test</code>
+ */
+public final class FastRenderingBound {
+
+	private FastRenderingBound(){}
+
+	public static void main(String[] args){
+		int worst = 0;
+		long pixels = 0;
+		for (int diameter = 16; diameter <= 1024; diameter += diameter < 128 ? 7 : 61)
+			for (int degrees = 0; degrees <= 45; degrees += 15) {
+				double angleA = Math.PI/2 + Math.toRadians(degrees), angleB = Math.PI/2 - Math.toRadians(degrees);
+				int widthSlider = Math.max(1, diameter/20), wheelRadius = diameter/2 - widthSlider - 2;
+				if (wheelRadius < 1)
+					continue;
+				WheelGeometry exact = WheelGeometry.build(diameter, wheelRadius, widthSlider, angleA, angleB, 2*(Math.PI - angleA), false);
+				WheelGeometry fast = WheelGeometry.build(diameter, wheelRadius, widthSlider, angleA, angleB, 2*(Math.PI - angleA), true);
+				for (int step = 0; step <= 64; step++) {
+					float value = step/64f;
+					BufferedImage expected = new BufferedImage(diameter, diameter, BufferedImage.TYPE_INT_ARGB);
+					BufferedImage actual = new BufferedImage(diameter, diameter, BufferedImage.TYPE_INT_ARGB);
+					WheelRenderer.render(expected, exact, value);
+					WheelRenderer.render(actual, fast, value);
+					for (int y = 0; y < diameter; y++)
+						for (int x = 0; x < diameter; x++) {
+							int difference = difference(expected.getRGB(x, y), actual.getRGB(x, y));
+							if (difference > worst) {
+								worst = difference;
+								System.out.printf("diameter %d, angle %d, value %.4f, pixel (%d, %d): %08x instead of %08x%n",
+										diameter, degrees, value, x, y, actual.getRGB(x, y), expected.getRGB(x, y));
+							}
+						}
+					pixels += (long)diameter*diameter;
+				}
+			}
+		System.out.printf("%d pixels compared, largest difference: %d%n", pixels, worst);
+		if (worst > 1)
+			System.exit(1);
+	}
+
+	private static int difference(int a, int b){
+		int worst = 0;
+		for (int shift = 0; shift < 32; shift += 8)
+			worst = Math.max(worst, Math.abs(((a >>> shift) & 0xFF) - ((b >>> shift) & 0xFF)));
+		return worst;
+	}
+}
@@ -0,0 +1,67 @@
+package hayen.ui;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of finding the zone of the wheel under a point, as done for every mouse event and, before the geometry tables, for every pixel
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HitTestBenchmark {
+
+	private static final int POINTS = 4096;
+
+	@Param({"256"})
+	public int diameter;
+
+	private final int[] x = new int[POINTS], y = new int[POINTS];
+	private int wheelRadius, widthSlider = 10;
+	private double angleA, angleB;
+	private WheelGeometry geometry;
+	private WheelHitMap hitMap;
+	private int index;
+
+	@Setup
+	public void setup(){
+		wheelRadius = diameter/2 - widthSlider - 2;
+		angleA = Math.PI/2 + Math.toRadians(15);
+		angleB = Math.PI/2 - Math.toRadians(15);
+		geometry = WheelGeometry.build(diameter, wheelRadius, widthSlider, angleA, angleB, 2*(Math.PI - angleA));
+		hitMap = new WheelHitMap(diameter, diameter/2, wheelRadius, widthSlider, 1, angleA, angleB);
+		Random random = new Random(42);
+		for (int i = 0; i < POINTS; i++) {
+			x[i] = random.nextInt(diameter);
+			y[i] = random.nextInt(diameter);
+		}
+	}
+
+	/**
+	 * Zone of a point computed from its polar coordinates
+	 */
+	@Benchmark
+	public int getSelection(){
+		int i = index = (index + 1) & (POINTS - 1);
+		int dx = x[i] - diameter/2, dy = diameter/2 - y[i];
+		return ColorWheel.getSelection(dx*dx + dy*dy, wheelRadius, widthSlider, 1, angleA, angleB, Math.atan2(dy, dx));
+	}
+	/**
+	 * Zone of a point read from the geometry of the layout
+	 */
+	@Benchmark
+	public byte zoneLookup(){
+		int i = index = (index + 1) & (POINTS - 1);
+		return geometry.zones[y[i]*diameter + x[i]];
+	}
+	/**
+	 * Zone and angle of a point read from the hit-test index, as done for a mouse press
+	 */
+	@Benchmark
+	public double hitMap(){
+		int i = index = (index + 1) & (POINTS - 1);
+		return hitMap.zone(x[i], y[i]) + hitMap.angle(x[i], y[i]);
+	}
+}
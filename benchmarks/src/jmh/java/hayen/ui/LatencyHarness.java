@@ -0,0 +1,239 @@
+package hayen.ui;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measure the delay between a <code>MouseEvent</code> arriving and the updated wheel being painted, by replaying drags into a <code>ColorWheel</code>
+ * and painting it into an offscreen image at a target frame rate, as the event dispatch thread of an application would.</br>
+ * Each event is dispatched when its time in the drag is reached, and its latency runs until the end of the first paint after it. A paint only happens at a frame
+ * and only if an event arrived since the previous one; the frames whose deadline passed while the thread was busy are counted as dropped. The allocation of
+ * each event is measured around its dispatch, listener included, and the time spent in the listener, which stands for the work of an application reacting to
+ * the color, comes from the <code>WheelMetrics</code>.</br>
+ * Run by <code>gradle :benchmarks:latencyHarness</code>, headless. Arguments: <code>--fps N</code> the frame rate (60), <code>--seconds S</code> the length
+ * of each drag (2), <code>--sizes A,B,...</code> the diameters of the wheel (256,512,1024), <code>--trace FILE</code> a recorded drag to replay instead of
+ * the built-in ones, one event per line as its time in milliseconds then its coordinates relative to the size of the wheel, from 0 to 1.
+ */
+public final class LatencyHarness {
+
+	/**
+	 * Time between two events of the built-in drags, in milliseconds, as sent by a 250 Hz mouse
+	 */
+	private static final double EVENT_INTERVAL = 4;
+
+	private LatencyHarness(){}
+
+	/**
+	 * Drag replayed into the wheel: a press at the first point, a drag at each of the others, and a release after the last one
+	 */
+	private static final class Trace {
+		private final String name;
+		/**
+		 * Time of each event since the press in milliseconds, and its coordinates relative to the size of the wheel
+		 */
+		private final double[] time, x, y;
+
+		private Trace(String name, double[] time, double[] x, double[] y){
+			this.name = name;
+			this.time = time;
+			this.x = x;
+			this.y = y;
+		}
+
+		/**
+		 * Drag spiraling around the chromatic circle, changing the <em>hue</em> and <em>saturation</em>
+		 */
+		static Trace hueSaturation(double seconds){
+			return polar("hue/saturation", seconds, (t, p) -> {
+				p[0] = 6*Math.PI*t;
+				p[1] = 0.35*(0.2 + 0.8*Math.abs(Math.sin(3*Math.PI*t)));
+			});
+		}
+		/**
+		 * Drag back and forth along the <em>value</em> slider, on the left of the wheel
+		 */
+		static Trace value(double seconds){
+			return polar("value", seconds, (t, p) -> {
+				p[0] = Math.PI*(1 + 0.4*Math.sin(4*Math.PI*t));
+				p[1] = 0.465;
+			});
+		}
+		/**
+		 * Drag back and forth along the <em>alpha</em> slider, on the right of the wheel
+		 */
+		static Trace alpha(double seconds){
+			return polar("alpha", seconds, (t, p) -> {
+				p[0] = 0.4*Math.PI*Math.sin(4*Math.PI*t);
+				p[1] = 0.465;
+			});
+		}
+		private interface Path {
+			/**
+			 * Give the angle and distance to the center, relative to the size of the wheel, at a time from 0 to 1
+			 */
+			void at(double t, double[] polar);
+		}
+		private static Trace polar(String name, double seconds, Path path){
+			int n = (int)(seconds*1000/EVENT_INTERVAL) + 1;
+			double[] time = new double[n], x = new double[n], y = new double[n], p = new double[2];
+			for (int i = 0; i < n; i++) {
+				path.at(i/(double)(n - 1), p);
+				time[i] = i*EVENT_INTERVAL;
+				x[i] = 0.5 + p[1]*Math.cos(p[0]);
+				y[i] = 0.5 - p[1]*Math.sin(p[0]);
+			}
+			return new Trace(name, time, x, y);
+		}
+		static Trace read(String file) throws IOException {
+			List<double[]> events = new ArrayList<double[]>();
+			for (String line : Files.readAllLines(Paths.get(file))) {
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#"))
+					continue;
+				String[] fields = line.split("[\\s,]+");
+				events.add(new double[]{Double.parseDouble(fields[0]), Double.parseDouble(fields[1]), Double.parseDouble(fields[2])});
+			}
+			if (events.isEmpty())
+				throw new IllegalArgumentException("empty trace: " + file);
+			int n = events.size();
+			double[] time = new double[n], x = new double[n], y = new double[n];
+			for (int i = 0; i < n; i++) {
+				time[i] = events.get(i)[0] - events.get(0)[0];
+				x[i] = events.get(i)[1];
+				y[i] = events.get(i)[2];
+			}
+			return new Trace(Paths.get(file).getFileName().toString(), time, x, y);
+		}
+	}
+
+	/**
+	 * Measures of one drag on one wheel
+	 */
+	private static final class Result {
+		final LatencyHistogram latency = new LatencyHistogram();
+		long events, frames, dropped, allocated;
+		boolean allocationMeasured;
+		WheelMetrics.Snapshot metrics;
+	}
+
+	public static void main(String[] args) throws Exception {
+		System.setProperty("java.awt.headless", "true");
+		int fps = 60;
+		double seconds = 2;
+		int[] sizes = {256, 512, 1024};
+		String file = null;
+		for (int i = 0; i < args.length; i++)
+			switch (args[i]) {
+				case "--fps": fps = Integer.parseInt(args[++i]); break;
+				case "--seconds": seconds = Double.parseDouble(args[++i]); break;
+				case "--sizes":
+					String[] list = args[++i].split(",");
+					sizes = new int[list.length];
+					for (int k = 0; k < list.length; k++)
+						sizes[k] = Integer.parseInt(list[k].trim());
+					break;
+				case "--trace": file = args[++i]; break;
+				default: throw new IllegalArgumentException("unknown argument: " + args[i]);
+			}
+		Trace[] traces = file != null ? new Trace[]{Trace.read(file)}
+				: new Trace[]{Trace.hueSaturation(seconds), Trace.value(seconds), Trace.alpha(seconds)};
+
+		System.out.printf(Locale.ROOT, "%-16s %6s %7s %7s %9s %9s %9s %9s %8s %11s %12s %12s%n", "drag", "size", "events", "frames", "p50 ms", "p90 ms", "p99 ms",
+				"max ms", "dropped", "bytes/event", "listener p99", "paint p99");
+		long period = 1_000_000_000L/fps;
+		for (int size : sizes)
+			for (Trace trace : traces) {
+				run(trace, size, period); // warm up
+				Result result = run(trace, size, period);
+				WheelMetrics.Latency latency = result.latency.snapshot();
+				System.out.printf(Locale.ROOT, "%-16s %6d %7d %7d %9.3f %9.3f %9.3f %9.3f %8d %11s %12.4f %12.3f%n", trace.name, size, result.events, result.frames,
+						latency.getPercentileMillis(50), latency.getPercentileMillis(90), latency.getPercentileMillis(99), latency.getMaxMillis(),
+						result.dropped, result.allocationMeasured ? Long.toString(result.allocated/Math.max(1, result.events)) : "n/a",
+						listenerP99(result.metrics), result.metrics.getPaints().getPercentileMillis(99));
+				WheelImageCache.clear();
+			}
+	}
+
+	private static double listenerP99(WheelMetrics.Snapshot metrics){
+		double worst = 0;
+		for (WheelMetrics.Latency latency : metrics.getListeners().values())
+			worst = Math.max(worst, latency.getPercentileMillis(99));
+		return worst;
+	}
+
+	/**
+	 * Replay a drag on the event dispatch thread
+	 */
+	private static Result run(Trace trace, int size, long period) throws Exception {
+		Result result = new Result();
+		SwingUtilities.invokeAndWait(() -> replay(trace, size, period, result));
+		return result;
+	}
+	private static void replay(Trace trace, int size, long period, Result result){
+		ColorWheel wheel = new ColorWheel();
+		wheel.setSize(size, size);
+		StringBuilder text = new StringBuilder();
+		wheel.addColorChangeListener(e -> { // an application showing the color
+			text.setLength(0);
+			text.append(Integer.toHexString(e.color.getRGB()));
+		});
+		BufferedImage target = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g2 = target.createGraphics();
+		wheel.paint(g2);
+
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		com.sun.management.ThreadMXBean allocations = threads instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean)threads : null;
+		result.allocationMeasured = allocations != null && allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled();
+		long thread = Thread.currentThread().getId();
+
+		WheelMetrics.reset();
+		WheelMetrics.setEnabled(true);
+		int n = trace.time.length;
+		long[] arrival = new long[n];
+		int next = 0, painted = 0;
+		long start = System.nanoTime(), frame = start + period;
+		while (painted < n) {
+			long now = System.nanoTime();
+			// events due, dispatched as they would be between two frames
+			while (next < n && (arrival[next] = start + (long)(trace.time[next]*1e6)) <= now) {
+				int x = (int)Math.round(trace.x[next]*size), y = (int)Math.round(trace.y[next]*size);
+				long before = result.allocationMeasured ? allocations.getThreadAllocatedBytes(thread) : 0;
+				wheel.dispatchEvent(new MouseEvent(wheel, next == 0 ? MouseEvent.MOUSE_PRESSED : MouseEvent.MOUSE_DRAGGED, now, 0, x, y, 1, false, MouseEvent.BUTTON1));
+				if (result.allocationMeasured)
+					result.allocated += allocations.getThreadAllocatedBytes(thread) - before;
+				result.events++;
+				next++;
+				now = System.nanoTime();
+			}
+			if (now < frame) {
+				LockSupport.parkNanos(Math.min(frame, next < n ? arrival[next] : frame) - now);
+				continue;
+			}
+			if (painted < next) {
+				wheel.paint(g2);
+				long end = System.nanoTime();
+				for (; painted < next; painted++)
+					result.latency.record(end - arrival[painted]);
+				result.frames++;
+				now = end;
+			}
+			long missed = (now - frame)/period;
+			result.dropped += missed;
+			frame += (missed + 1)*period;
+		}
+		wheel.dispatchEvent(new MouseEvent(wheel, MouseEvent.MOUSE_RELEASED, System.nanoTime(), 0, 0, 0, 1, false, MouseEvent.BUTTON1));
+		WheelMetrics.setEnabled(false);
+		result.metrics = WheelMetrics.snapshot();
+		g2.dispose();
+	}
+}
@@ -0,0 +1,63 @@
+package hayen.ui;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of painting a <code>ColorWheel</code> and its cursors into an offscreen image, while the selected color moves
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PaintBenchmark {
+
+	@Param({"256", "512"})
+	public int diameter;
+	@Param({"false", "true"})
+	public boolean valueOverlay;
+	@Param({"false", "true"})
+	public boolean compact;
+
+	private ColorWheel wheel;
+	private BufferedImage target;
+	private Graphics2D g2;
+	private int step;
+
+	@Setup
+	public void setup(){
+		wheel = new ColorWheel();
+		wheel.setValueOverlay(valueOverlay);
+		wheel.setCompact(compact);
+		wheel.setSize(diameter, diameter);
+		target = new BufferedImage(diameter, diameter, BufferedImage.TYPE_INT_ARGB);
+		g2 = target.createGraphics();
+		wheel.paint(g2);
+	}
+	@TearDown
+	public void tearDown(){
+		g2.dispose();
+		WheelImageCache.clear();
+	}
+
+	/**
+	 * Paint after moving the cursor on the chromatic circle
+	 */
+	@Benchmark
+	public BufferedImage paintHueChange(){
+		wheel.setColor((step = (step + 1) & 0xFF)/256f, 0.5f, 1f);
+		wheel.paint(g2);
+		return target;
+	}
+	/**
+	 * Paint after moving the cursor of the <em>value</em> slider
+	 */
+	@Benchmark
+	public BufferedImage paintValueChange(){
+		wheel.setValue((step = (step + 1) & 0xFF)/255f);
+		wheel.paint(g2);
+		return target;
+	}
+}
@@ -0,0 +1,54 @@
+package hayen.ui;
+
+import hayen.color.ColorConversion;
+import hayen.color.Palette;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of snapping a color to the nearest color of a palette, as done for every mouse event when the wheel has a palette
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PaletteBenchmark {
+
+	private static final int POINTS = 4096;
+
+	@Param({"256", "10000", "50000"})
+	public int size;
+
+	private final int[] colors = new int[POINTS];
+	private Palette palette;
+	private int index;
+
+	@Setup
+	public void setup(){
+		Random random = new Random(42);
+		int[] argb = new int[size];
+		for (int i = 0; i < size; i++)
+			argb[i] = random.nextInt() | 0xFF000000;
+		palette = new Palette(argb);
+		// colors picked along a drag on the chromatic circle
+		for (int i = 0; i < POINTS; i++)
+			colors[i] = ColorConversion.HSBtoRGB(i/(float)POINTS, 0.5f + 0.5f*(float)Math.sin(i/64.0), 1);
+	}
+
+	/**
+	 * Nearest color of a new color
+	 */
+	@Benchmark
+	public int nearest(){
+		index = (index + 1) & (POINTS - 1);
+		return palette.nearest(colors[index]);
+	}
+	/**
+	 * Nearest color of the color looked up last, as for a mouse moving within a pixel
+	 */
+	@Benchmark
+	public int nearestSameColor(){
+		return palette.nearest(colors[0]);
+	}
+}
@@ -0,0 +1,60 @@
+package hayen.ui;
+
+import hayen.color.ColorConversion;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Speedup of the SIMD kernel of <code>ColorConversion</code> over the scalar one, which is forced by a system property in its own fork
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(VectorConversionBenchmark.SIZE)
+public class VectorConversionBenchmark {
+
+	static final int SIZE = 4096;
+
+	private final float[] hue = new float[SIZE], saturation = new float[SIZE], value = new float[SIZE];
+	private final int[] argb = new int[SIZE], index = new int[SIZE], pixels = new int[2*SIZE];
+
+	@Setup
+	public void setup(){
+		Random random = new Random(42);
+		for (int i = 0; i < SIZE; i++) {
+			hue[i] = random.nextFloat();
+			saturation[i] = random.nextFloat();
+			value[i] = random.nextFloat();
+			index[i] = 2*i;
+		}
+	}
+
+	@Benchmark
+	@Fork(jvmArgsAppend = "-Dhayen.color.vector=false")
+	public int[] planarScalar(){
+		ColorConversion.toRGB(hue, saturation, value, 0, argb, 0, SIZE);
+		return argb;
+	}
+	@Benchmark
+	public int[] planarVector(){
+		ColorConversion.toRGB(hue, saturation, value, 0, argb, 0, SIZE);
+		return argb;
+	}
+
+	/**
+	 * Conversion done by the rasterizer: same <em>value</em> for all the colors, written at their pixel
+	 */
+	@Benchmark
+	@Fork(jvmArgsAppend = "-Dhayen.color.vector=false")
+	public int[] scatterScalar(){
+		ColorConversion.toRGB(hue, saturation, 0.5f, pixels, index, SIZE);
+		return pixels;
+	}
+	@Benchmark
+	public int[] scatterVector(){
+		ColorConversion.toRGB(hue, saturation, 0.5f, pixels, index, SIZE);
+		return pixels;
+	}
+}
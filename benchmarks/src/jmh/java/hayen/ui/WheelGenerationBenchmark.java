@@ -0,0 +1,84 @@
+package hayen.ui;
+
+import hayen.color.ColorSpace;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of rasterizing the wheel, headless, without going through the <code>WheelImageCache</code>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WheelGenerationBenchmark {
+
+	@Param({"128", "256", "512", "1024"})
+	public int diameter;
+	@Param({"false", "true"})
+	public boolean fast;
+	@Param({"false", "true"})
+	public boolean antialiased;
+	@Param({"HSB", "OKLCH", "HSLuv"})
+	public String space;
+
+	private int wheelRadius, widthSlider = 10;
+	private double angleA, angleB, delta;
+	private WheelGeometry geometry;
+	private BufferedImage image;
+	private float value;
+	private ColorSpace colorSpace;
+
+	@Setup
+	public void setup(){
+		wheelRadius = diameter/2 - widthSlider - 2;
+		angleA = Math.PI/2 + Math.toRadians(15);
+		angleB = Math.PI/2 - Math.toRadians(15);
+		delta = 2*(Math.PI - angleA);
+		geometry = WheelGeometry.build(diameter, wheelRadius, widthSlider, angleA, angleB, delta, fast, antialiased);
+		image = new BufferedImage(diameter, diameter, BufferedImage.TYPE_INT_ARGB);
+		for (ColorSpace s : new ColorSpace[]{ColorSpace.HSB, ColorSpace.OKLCH, ColorSpace.HSLUV})
+			if (s.getName().equals(space))
+				colorSpace = s;
+		colorSpace.toRGB(0, 0, 0); // builds the table of the space out of the measurements
+	}
+
+	/**
+	 * Classification of every pixel of the layout
+	 */
+	@Benchmark
+	public WheelGeometry geometry(){
+		return WheelGeometry.build(diameter, wheelRadius, widthSlider, angleA, angleB, delta, fast, antialiased);
+	}
+
+	/**
+	 * Full render of the wheel from an existing geometry
+	 */
+	@Benchmark
+	public BufferedImage render(){
+		WheelRenderer.render(image, geometry, colorSpace, 1);
+		return image;
+	}
+
+	/**
+	 * Render of the chromatic circle only, as done when the <em>value</em> changes
+	 */
+	@Benchmark
+	public BufferedImage recolor(){
+		value = value >= 1 ? 0 : value + 0.01f;
+		WheelRenderer.recolor(image, geometry, colorSpace, value);
+		return image;
+	}
+
+	/**
+	 * Everything a new <code>ColorWheel</code> does before its first paint when the cache is cold
+	 */
+	@Benchmark
+	public BufferedImage generate(){
+		WheelGeometry geometry = WheelGeometry.build(diameter, wheelRadius, widthSlider, angleA, angleB, delta, fast, antialiased);
+		BufferedImage image = new BufferedImage(diameter, diameter, BufferedImage.TYPE_INT_ARGB);
+		WheelRenderer.render(image, geometry, colorSpace, 1);
+		return image;
+	}
+}
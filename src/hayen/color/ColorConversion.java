@@ -0,0 +1,417 @@
+package hayen.color;
+
+import java.nio.BufferOverflowException;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Bulk conversions between colors in the hex ARGB format and colors in the HSB format, independent of AWT and Swing.</br>
+ * The HSB colors are stored as <code>float</code>s, either interleaved (<em>hue</em>, <em>saturation</em>, <em>value</em> of each color next to each other)
+ * or planar (one array per parameter). The results are exactly the ones of <code>Color.HSBtoRGB</code> and <code>Color.RGBtoHSB</code>, which are the
+ * conversions used to render a <code>ColorWheel</code> and to report its color. The RGB colors produced are always opaque, and the alpha of the converted
+ * ones is ignored.</br>
+ * Conversions of more than <code>PARALLEL_THRESHOLD</code> colors are split across the common fork-join pool. The buffers are read and written at absolute
+ * indices from their position, which is then moved past the colors converted, like the bulk methods of the buffers do.</br>
+ * When the <code>jdk.incubator.vector</code> module is present (<code>--add-modules jdk.incubator.vector</code>), the planar HSB to RGB conversions run on
+ * a SIMD kernel giving the same results. It can be disabled by setting the system property <code>hayen.color.vector</code> to <code>false</code>.
+ * @see hayen.color.HSVAModel
+ */
+public final class ColorConversion {
+
+	/**
+	 * Smallest number of colors for which a conversion is split across several threads
+	 */
+	public static final int PARALLEL_THRESHOLD = 1 << 15;
+	/**
+	 * Number of colors converted by each task of a parallel conversion
+	 */
+	private static final int GRAIN = 1 << 13;
+
+	/**
+	 * Conversion of planar HSB colors to the hex ARGB format
+	 */
+	interface Kernel {
+		/**
+		 * @see ColorConversion#toRGB(float[], float[], float[], int, int[], int, int)
+		 */
+		void toRGB(float[] hue, float[] saturation, float[] brightness, int hsbOffset, int[] argb, int offset, int length);
+		/**
+		 * @see ColorConversion#toRGB(float[], float[], float, int[], int[], int)
+		 */
+		void toRGB(float[] hue, float[] saturation, float brightness, int[] argb, int[] index, int length);
+	}
+
+	private static final Kernel SCALAR = new Kernel() {
+		@Override
+		public void toRGB(float[] hue, float[] saturation, float[] brightness, int hsbOffset, int[] argb, int offset, int length){
+			for (int i = 0; i < length; i++)
+				argb[offset + i] = HSBtoRGB(hue[hsbOffset + i], saturation[hsbOffset + i], brightness[hsbOffset + i]);
+		}
+		@Override
+		public void toRGB(float[] hue, float[] saturation, float brightness, int[] argb, int[] index, int length){
+			for (int i = 0; i < length; i++)
+				argb[index[i]] = HSBtoRGB(hue[i], saturation[i], brightness);
+		}
+	};
+	private static final Kernel KERNEL = loadKernel();
+
+	private ColorConversion(){}
+
+	/**
+	 * Return if the planar conversions to RGB run on the SIMD kernel of the Vector API
+	 * @return true if the conversions are vectorized
+	 */
+	public static boolean isVectorized(){ return KERNEL != SCALAR; }
+
+	/**
+	 * Convert a color from the HSB format to the hex RGB format, exactly like <code>Color.HSBtoRGB</code>
+	 * @param hue : the <em>hue</em> of the color, only its fractional part is used
+	 * @param saturation : the <em>saturation</em> of the color [0, 1]
+	 * @param brightness : the <em>value</em> of the color [0, 1]
+	 * @return the opaque color in the hex ARGB format
+	 */
+	public static int HSBtoRGB(float hue, float saturation, float brightness){
+		int r = 0, g = 0, b = 0;
+		if (saturation == 0) {
+			r = g = b = (int)(brightness * 255.0f + 0.5f);
+		} else {
+			float h = (hue - (float)Math.floor(hue)) * 6.0f;
+			float f = h - (float)Math.floor(h);
+			float p = brightness * (1.0f - saturation);
+			float q = brightness * (1.0f - saturation * f);
+			float t = brightness * (1.0f - (saturation * (1.0f - f)));
+			switch ((int)h) {
+				case 0:
+					r = (int)(brightness * 255.0f + 0.5f);
+					g = (int)(t * 255.0f + 0.5f);
+					b = (int)(p * 255.0f + 0.5f);
+					break;
+				case 1:
+					r = (int)(q * 255.0f + 0.5f);
+					g = (int)(brightness * 255.0f + 0.5f);
+					b = (int)(p * 255.0f + 0.5f);
+					break;
+				case 2:
+					r = (int)(p * 255.0f + 0.5f);
+					g = (int)(brightness * 255.0f + 0.5f);
+					b = (int)(t * 255.0f + 0.5f);
+					break;
+				case 3:
+					r = (int)(p * 255.0f + 0.5f);
+					g = (int)(q * 255.0f + 0.5f);
+					b = (int)(brightness * 255.0f + 0.5f);
+					break;
+				case 4:
+					r = (int)(t * 255.0f + 0.5f);
+					g = (int)(p * 255.0f + 0.5f);
+					b = (int)(brightness * 255.0f + 0.5f);
+					break;
+				case 5:
+					r = (int)(brightness * 255.0f + 0.5f);
+					g = (int)(p * 255.0f + 0.5f);
+					b = (int)(q * 255.0f + 0.5f);
+					break;
+			}
+		}
+		return 0xFF000000 | (r << 16) | (g << 8) | b;
+	}
+	/**
+	 * Return the <em>hue</em> of a color, exactly like <code>Color.RGBtoHSB</code>
+	 * @param argb : the color in the hex ARGB format
+	 * @return the <em>hue</em> ([0, 1[)
+	 */
+	public static float hue(int argb){
+		int r = (argb >>> 16) & 0xFF, g = (argb >>> 8) & 0xFF, b = argb & 0xFF;
+		int cmax = Math.max(r, Math.max(g, b));
+		int cmin = Math.min(r, Math.min(g, b));
+		if (cmax == cmin)
+			return 0;
+		float redc = ((float)(cmax - r)) / ((float)(cmax - cmin));
+		float greenc = ((float)(cmax - g)) / ((float)(cmax - cmin));
+		float bluec = ((float)(cmax - b)) / ((float)(cmax - cmin));
+		float hue;
+		if (r == cmax)
+			hue = bluec - greenc;
+		else if (g == cmax)
+			hue = 2.0f + redc - bluec;
+		else
+			hue = 4.0f + greenc - redc;
+		hue = hue / 6.0f;
+		if (hue < 0)
+			hue = hue + 1.0f;
+		return hue;
+	}
+	/**
+	 * Return the <em>saturation</em> of a color, exactly like <code>Color.RGBtoHSB</code>
+	 * @param argb : the color in the hex ARGB format
+	 * @return the <em>saturation</em> ([0, 1])
+	 */
+	public static float saturation(int argb){
+		int r = (argb >>> 16) & 0xFF, g = (argb >>> 8) & 0xFF, b = argb & 0xFF;
+		int cmax = Math.max(r, Math.max(g, b));
+		int cmin = Math.min(r, Math.min(g, b));
+		return cmax != 0 ? ((float)(cmax - cmin)) / ((float)cmax) : 0;
+	}
+	/**
+	 * Return the <em>value</em> of a color, exactly like <code>Color.RGBtoHSB</code>
+	 * @param argb : the color in the hex ARGB format
+	 * @return the <em>value</em> ([0, 1])
+	 */
+	public static float brightness(int argb){
+		int r = (argb >>> 16) & 0xFF, g = (argb >>> 8) & 0xFF, b = argb & 0xFF;
+		return ((float)Math.max(r, Math.max(g, b))) / 255.0f;
+	}
+
+	/**
+	 * Convert interleaved HSB colors to the hex ARGB format
+	 * @param hsb : the <em>hue</em>, <em>saturation</em> and <em>value</em> of each color
+	 * @param hsbOffset : the index of the first color in <code>hsb</code>
+	 * @param argb : the array receiving the colors
+	 * @param offset : the index of the first color in <code>argb</code>
+	 * @param length : the number of colors to convert
+	 */
+	public static void toRGB(final float[] hsb, final int hsbOffset, final int[] argb, final int offset, int length){
+		checkRange(hsb.length, hsbOffset, 3*length);
+		checkRange(argb.length, offset, length);
+		run(length, (from, to) -> {
+			for (int i = from, j = hsbOffset + 3*from; i < to; i++, j += 3)
+				argb[offset + i] = HSBtoRGB(hsb[j], hsb[j + 1], hsb[j + 2]);
+		});
+	}
+	/**
+	 * Convert planar HSB colors to the hex ARGB format
+	 * @param hue : the <em>hue</em> of each color
+	 * @param saturation : the <em>saturation</em> of each color
+	 * @param brightness : the <em>value</em> of each color
+	 * @param hsbOffset : the index of the first color in the HSB arrays
+	 * @param argb : the array receiving the colors
+	 * @param offset : the index of the first color in <code>argb</code>
+	 * @param length : the number of colors to convert
+	 */
+	public static void toRGB(final float[] hue, final float[] saturation, final float[] brightness, final int hsbOffset, final int[] argb, final int offset, int length){
+		checkRange(hue.length, hsbOffset, length);
+		checkRange(saturation.length, hsbOffset, length);
+		checkRange(brightness.length, hsbOffset, length);
+		checkRange(argb.length, offset, length);
+		run(length, (from, to) -> KERNEL.toRGB(hue, saturation, brightness, hsbOffset + from, argb, offset + from, to - from));
+	}
+	/**
+	 * Convert planar HSB colors sharing the same <em>value</em> to the hex ARGB format, writing each color at its own index.</br>
+	 * This is how the chromatic circle of a <code>ColorWheel</code> is rendered. The conversion is not split across threads
+	 * @param hue : the <em>hue</em> of each color
+	 * @param saturation : the <em>saturation</em> of each color
+	 * @param brightness : the <em>value</em> of all the colors
+	 * @param argb : the array receiving the colors
+	 * @param index : the index in <code>argb</code> of each color
+	 * @param length : the number of colors to convert
+	 */
+	public static void toRGB(float[] hue, float[] saturation, float brightness, int[] argb, int[] index, int length){
+		checkRange(hue.length, 0, length);
+		checkRange(saturation.length, 0, length);
+		checkRange(index.length, 0, length);
+		KERNEL.toRGB(hue, saturation, brightness, argb, index, length);
+	}
+	/**
+	 * Convert colors in the hex ARGB format to interleaved HSB colors
+	 * @param argb : the colors to convert
+	 * @param offset : the index of the first color in <code>argb</code>
+	 * @param hsb : the array receiving the <em>hue</em>, <em>saturation</em> and <em>value</em> of each color
+	 * @param hsbOffset : the index of the first color in <code>hsb</code>
+	 * @param length : the number of colors to convert
+	 */
+	public static void toHSB(final int[] argb, final int offset, final float[] hsb, final int hsbOffset, int length){
+		checkRange(argb.length, offset, length);
+		checkRange(hsb.length, hsbOffset, 3*length);
+		run(length, (from, to) -> {
+			for (int i = from, j = hsbOffset + 3*from; i < to; i++, j += 3) {
+				int c = argb[offset + i];
+				hsb[j] = hue(c);
+				hsb[j + 1] = saturation(c);
+				hsb[j + 2] = brightness(c);
+			}
+		});
+	}
+	/**
+	 * Convert colors in the hex ARGB format to planar HSB colors
+	 * @param argb : the colors to convert
+	 * @param offset : the index of the first color in <code>argb</code>
+	 * @param hue : the array receiving the <em>hue</em> of each color
+	 * @param saturation : the array receiving the <em>saturation</em> of each color
+	 * @param brightness : the array receiving the <em>value</em> of each color
+	 * @param hsbOffset : the index of the first color in the HSB arrays
+	 * @param length : the number of colors to convert
+	 */
+	public static void toHSB(final int[] argb, final int offset, final float[] hue, final float[] saturation, final float[] brightness, final int hsbOffset, int length){
+		checkRange(argb.length, offset, length);
+		checkRange(hue.length, hsbOffset, length);
+		checkRange(saturation.length, hsbOffset, length);
+		checkRange(brightness.length, hsbOffset, length);
+		run(length, (from, to) -> {
+			for (int i = from; i < to; i++) {
+				int c = argb[offset + i];
+				hue[hsbOffset + i] = hue(c);
+				saturation[hsbOffset + i] = saturation(c);
+				brightness[hsbOffset + i] = brightness(c);
+			}
+		});
+	}
+
+	/**
+	 * Convert the interleaved HSB colors remaining in a buffer to the hex ARGB format
+	 * @param hsb : the buffer of the <em>hue</em>, <em>saturation</em> and <em>value</em> of each color
+	 * @param argb : the buffer receiving the colors
+	 * @throws java.nio.BufferOverflowException if <code>argb</code> cannot hold all the colors
+	 */
+	public static void toRGB(final FloatBuffer hsb, final IntBuffer argb){
+		int length = hsb.remaining()/3;
+		if (argb.remaining() < length)
+			throw new BufferOverflowException();
+		if (hsb.hasArray() && argb.hasArray())
+			toRGB(hsb.array(), hsb.arrayOffset() + hsb.position(), argb.array(), argb.arrayOffset() + argb.position(), length);
+		else {
+			final int src = hsb.position(), dst = argb.position();
+			run(length, (from, to) -> {
+				for (int i = from, j = src + 3*from; i < to; i++, j += 3)
+					argb.put(dst + i, HSBtoRGB(hsb.get(j), hsb.get(j + 1), hsb.get(j + 2)));
+			});
+		}
+		hsb.position(hsb.position() + 3*length);
+		argb.position(argb.position() + length);
+	}
+	/**
+	 * Convert the planar HSB colors remaining in three buffers to the hex ARGB format.</br>
+	 * As many colors as remain in the shortest of the HSB buffers are converted
+	 * @param hue : the buffer of the <em>hue</em> of each color
+	 * @param saturation : the buffer of the <em>saturation</em> of each color
+	 * @param brightness : the buffer of the <em>value</em> of each color
+	 * @param argb : the buffer receiving the colors
+	 * @throws java.nio.BufferOverflowException if <code>argb</code> cannot hold all the colors
+	 */
+	public static void toRGB(final FloatBuffer hue, final FloatBuffer saturation, final FloatBuffer brightness, final IntBuffer argb){
+		int length = Math.min(hue.remaining(), Math.min(saturation.remaining(), brightness.remaining()));
+		if (argb.remaining() < length)
+			throw new BufferOverflowException();
+		final int h = hue.position(), s = saturation.position(), v = brightness.position(), dst = argb.position();
+		run(length, (from, to) -> {
+			for (int i = from; i < to; i++)
+				argb.put(dst + i, HSBtoRGB(hue.get(h + i), saturation.get(s + i), brightness.get(v + i)));
+		});
+		hue.position(h + length);
+		saturation.position(s + length);
+		brightness.position(v + length);
+		argb.position(dst + length);
+	}
+	/**
+	 * Convert the colors in the hex ARGB format remaining in a buffer to interleaved HSB colors
+	 * @param argb : the buffer of the colors to convert
+	 * @param hsb : the buffer receiving the <em>hue</em>, <em>saturation</em> and <em>value</em> of each color
+	 * @throws java.nio.BufferOverflowException if <code>hsb</code> cannot hold all the colors
+	 */
+	public static void toHSB(final IntBuffer argb, final FloatBuffer hsb){
+		int length = argb.remaining();
+		if (hsb.remaining()/3 < length)
+			throw new BufferOverflowException();
+		if (hsb.hasArray() && argb.hasArray())
+			toHSB(argb.array(), argb.arrayOffset() + argb.position(), hsb.array(), hsb.arrayOffset() + hsb.position(), length);
+		else {
+			final int src = argb.position(), dst = hsb.position();
+			run(length, (from, to) -> {
+				for (int i = from, j = dst + 3*from; i < to; i++, j += 3) {
+					int c = argb.get(src + i);
+					hsb.put(j, hue(c));
+					hsb.put(j + 1, saturation(c));
+					hsb.put(j + 2, brightness(c));
+				}
+			});
+		}
+		argb.position(argb.position() + length);
+		hsb.position(hsb.position() + 3*length);
+	}
+	/**
+	 * Convert the colors in the hex ARGB format remaining in a buffer to planar HSB colors
+	 * @param argb : the buffer of the colors to convert
+	 * @param hue : the buffer receiving the <em>hue</em> of each color
+	 * @param saturation : the buffer receiving the <em>saturation</em> of each color
+	 * @param brightness : the buffer receiving the <em>value</em> of each color
+	 * @throws java.nio.BufferOverflowException if one of the HSB buffers cannot hold all the colors
+	 */
+	public static void toHSB(final IntBuffer argb, final FloatBuffer hue, final FloatBuffer saturation, final FloatBuffer brightness){
+		int length = argb.remaining();
+		if (hue.remaining() < length || saturation.remaining() < length || brightness.remaining() < length)
+			throw new BufferOverflowException();
+		final int src = argb.position(), h = hue.position(), s = saturation.position(), v = brightness.position();
+		run(length, (from, to) -> {
+			for (int i = from; i < to; i++) {
+				int c = argb.get(src + i);
+				hue.put(h + i, hue(c));
+				saturation.put(s + i, saturation(c));
+				brightness.put(v + i, brightness(c));
+			}
+		});
+		argb.position(src + length);
+		hue.position(h + length);
+		saturation.position(s + length);
+		brightness.position(v + length);
+	}
+
+	/**
+	 * Part of a conversion
+	 */
+	private interface Range {
+		/**
+		 * Convert the colors of a range
+		 * @param from : the index of the first color, relative to the start of the conversion
+		 * @param to : the index after the last color
+		 */
+		void convert(int from, int to);
+	}
+
+	/**
+	 * Task converting a range of colors, split in halves until they are small enough
+	 */
+	private static final class Split extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Range range;
+		private final int from, to;
+
+		private Split(Range range, int from, int to){
+			this.range = range;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute(){
+			if (to - from <= GRAIN) {
+				range.convert(from, to);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new Split(range, from, middle), new Split(range, middle, to));
+		}
+	}
+
+	private static Kernel loadKernel(){
+		if (!Boolean.parseBoolean(System.getProperty("hayen.color.vector", "true")) || !ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent())
+			return SCALAR;
+		try {
+			return (Kernel)Class.forName("hayen.color.VectorKernel").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+			return SCALAR;
+		}
+	}
+
+	private static void run(int length, Range range){
+		if (length < PARALLEL_THRESHOLD)
+			range.convert(0, length);
+		else
+			ForkJoinPool.commonPool().invoke(new Split(range, 0, length));
+	}
+
+	private static void checkRange(int size, int offset, int length){
+		if (offset < 0 || length < 0 || offset > size - length)
+			throw new ArrayIndexOutOfBoundsException("range [" + offset + ", " + offset + " + " + length + ") out of bounds for length " + size);
+	}
+}
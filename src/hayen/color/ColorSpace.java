@@ -0,0 +1,302 @@
+package hayen.color;
+
+/**
+ * Cylindrical color space in which a <code>ColorWheel</code> lays out its colors: the <em>hue</em> is the angle on the chromatic circle, the
+ * <em>saturation</em> the distance to its center and the <em>value</em> the position on the <em>value</em> slider, all three in [0, 1].</br>
+ * <code>HSB</code> is the space of <code>Color.HSBtoRGB</code>. <code>OKLCH</code> and <code>HSLUV</code> are perceptually uniform: colors of the same
+ * <em>value</em> look as light as each other, and the <em>value</em> is their lightness. In both, the <em>saturation</em> is the chroma relative to the
+ * largest chroma of sRGB at that <em>hue</em> and lightness, so that every point of the circle is a displayable color.</br>
+ * The largest chroma of the perceptual spaces is looked up in a table sampling it, built the first time the space is used and shared by every wheel, so
+ * that a wheel costs about the same to render in any space.
+ * @see hayen.ui.ColorWheel#setColorSpace(ColorSpace)
+ */
+public abstract class ColorSpace {
+
+	/**
+	 * <em>Hue</em>, <em>saturation</em> and <em>value</em> of <code>Color.HSBtoRGB</code>
+	 */
+	public static final ColorSpace HSB = new HSBSpace();
+	/**
+	 * OKLCH, the cylindrical form of OKLab, with the chroma relative to the largest one of sRGB
+	 */
+	public static final ColorSpace OKLCH = new OKLCHSpace();
+	/**
+	 * HSLuv, the cylindrical form of CIELUV with the chroma relative to the largest one of sRGB
+	 */
+	public static final ColorSpace HSLUV = new HSLuvSpace();
+
+	private final String name;
+
+	/**
+	 * @param name : the name of the color space
+	 */
+	protected ColorSpace(String name){
+		this.name = name;
+	}
+
+	/**
+	 * Return the name of this color space
+	 * @return the name
+	 */
+	public String getName(){ return name; }
+	@Override
+	public String toString(){ return name; }
+
+	/**
+	 * Convert a color of this space to sRGB, exactly
+	 * @param hue : the <em>hue</em> of the color, only its fractional part is used
+	 * @param saturation : the <em>saturation</em> of the color [0, 1]
+	 * @param value : the <em>value</em> of the color [0, 1]
+	 * @param rgb : receives the <em>red</em>, <em>green</em> and <em>blue</em> of the color [0, 1]
+	 */
+	public abstract void toRGB(float hue, float saturation, float value, float[] rgb);
+	/**
+	 * Convert a sRGB color to this space, exactly
+	 * @param red : the <em>red</em> of the color [0, 1]
+	 * @param green : the <em>green</em> of the color [0, 1]
+	 * @param blue : the <em>blue</em> of the color [0, 1]
+	 * @param hsv : receives the <em>hue</em> ([0, 1[), <em>saturation</em> and <em>value</em> of the color
+	 */
+	public abstract void fromRGB(float red, float green, float blue, float[] hsv);
+
+	/**
+	 * Convert a color of this space to the hex RGB format, as it is rendered on the wheel
+	 * @param hue : the <em>hue</em> of the color, only its fractional part is used
+	 * @param saturation : the <em>saturation</em> of the color [0, 1]
+	 * @param value : the <em>value</em> of the color [0, 1]
+	 * @return the opaque color in the hex ARGB format
+	 */
+	public int toRGB(float hue, float saturation, float value){
+		float[] rgb = new float[3];
+		toRGB(hue, saturation, value, rgb);
+		return pack(rgb[0], rgb[1], rgb[2]);
+	}
+	/**
+	 * Convert colors of this space sharing the same <em>value</em> to the hex ARGB format, writing each color at its own index, as they are rendered on the wheel
+	 * @param hue : the <em>hue</em> of each color
+	 * @param saturation : the <em>saturation</em> of each color
+	 * @param value : the <em>value</em> of all the colors
+	 * @param argb : the array receiving the colors
+	 * @param index : the index in <code>argb</code> of each color
+	 * @param length : the number of colors to convert
+	 */
+	public void toRGB(float[] hue, float[] saturation, float value, int[] argb, int[] index, int length){
+		for (int i = 0; i < length; i++)
+			argb[index[i]] = toRGB(hue[i], saturation[i], value);
+	}
+
+	/**
+	 * Return an opaque color in the hex ARGB format from channels in [0, 1], rounded and clamped
+	 */
+	static int pack(float red, float green, float blue){
+		return 0xFF000000 | (level(red) << 16) | (level(green) << 8) | level(blue);
+	}
+	private static int level(float c){
+		int l = (int)(c*255 + 0.5f);
+		return l < 0 ? 0 : l > 255 ? 255 : l;
+	}
+	/**
+	 * sRGB transfer function, from linear intensity to encoded channel
+	 */
+	static double encode(double c){
+		return c <= 0.0031308 ? 12.92*c : 1.055*Math.pow(c, 1/2.4) - 0.055;
+	}
+	/**
+	 * Inverse of <code>encode</code>
+	 */
+	static double decode(double c){
+		return c <= 0.04045 ? c/12.92 : Math.pow((c + 0.055)/1.055, 2.4);
+	}
+	/**
+	 * Return the fractional part of a <em>hue</em>
+	 */
+	static double wrap(double hue){
+		return hue - Math.floor(hue);
+	}
+
+	/**
+	 * <code>Color.HSBtoRGB</code>, with the exact and SIMD conversions of <code>ColorConversion</code>
+	 */
+	private static final class HSBSpace extends ColorSpace {
+
+		HSBSpace(){ super("HSB"); }
+
+		@Override
+		public void toRGB(float hue, float saturation, float value, float[] rgb){
+			float h = (float)wrap(hue)*6;
+			int sextant = Math.min(5, (int)h);
+			float f = h - sextant;
+			float p = value*(1 - saturation), q = value*(1 - saturation*f), t = value*(1 - saturation*(1 - f));
+			switch (sextant) {
+				case 0: rgb[0] = value; rgb[1] = t; rgb[2] = p; break;
+				case 1: rgb[0] = q; rgb[1] = value; rgb[2] = p; break;
+				case 2: rgb[0] = p; rgb[1] = value; rgb[2] = t; break;
+				case 3: rgb[0] = p; rgb[1] = q; rgb[2] = value; break;
+				case 4: rgb[0] = t; rgb[1] = p; rgb[2] = value; break;
+				default: rgb[0] = value; rgb[1] = p; rgb[2] = q; break;
+			}
+		}
+		@Override
+		public void fromRGB(float red, float green, float blue, float[] hsv){
+			float max = Math.max(red, Math.max(green, blue)), min = Math.min(red, Math.min(green, blue)), range = max - min;
+			float hue = 0;
+			if (range > 0) {
+				if (max == red)
+					hue = (green - blue)/range;
+				else if (max == green)
+					hue = 2 + (blue - red)/range;
+				else
+					hue = 4 + (red - green)/range;
+				hue /= 6;
+				if (hue < 0)
+					hue += 1;
+			}
+			hsv[0] = hue;
+			hsv[1] = max > 0 ? range/max : 0;
+			hsv[2] = max;
+		}
+		@Override
+		public int toRGB(float hue, float saturation, float value){
+			return ColorConversion.HSBtoRGB(hue, saturation, value);
+		}
+		@Override
+		public void toRGB(float[] hue, float[] saturation, float value, int[] argb, int[] index, int length){
+			ColorConversion.toRGB(hue, saturation, value, argb, index, length);
+		}
+	}
+
+	/**
+	 * OKLCH, the largest chroma of sRGB being found by bisection
+	 */
+	private static final class OKLCHSpace extends LookupColorSpace {
+
+		private static final int BISECTIONS = 24;
+		/**
+		 * Chroma larger than the one of any sRGB color
+		 */
+		private static final double CHROMA_BOUND = 0.4;
+
+		OKLCHSpace(){ super("OKLCH"); }
+
+		@Override
+		public void fromRGB(float red, float green, float blue, float[] hsv){
+			double[] lab = new double[3];
+			OKLab.fromLinear(decode(red), decode(green), decode(blue), lab);
+			double chroma = Math.hypot(lab[1], lab[2]);
+			double lightness = Math.min(1, Math.max(0, lab[0]));
+			hsv[0] = 0;
+			hsv[1] = 0;
+			hsv[2] = (float)lightness;
+			if (chroma < 1e-7)
+				return;
+			double angle = Math.atan2(lab[2], lab[1]);
+			double max = maxChroma(lightness, angle);
+			hsv[0] = (float)wrap(angle/(2*Math.PI));
+			hsv[1] = max > 0 ? (float)Math.min(1, chroma/max) : 0;
+		}
+
+		@Override
+		double maxChroma(double value, double angle){
+			if (value <= 0 || value >= 1)
+				return 0;
+			double cos = Math.cos(angle), sin = Math.sin(angle);
+			double[] linear = new double[3];
+			double low = 0, high = CHROMA_BOUND;
+			for (int i = 0; i < BISECTIONS; i++) {
+				double chroma = (low + high)/2;
+				OKLab.toLinear(value, chroma*cos, chroma*sin, linear);
+				if (linear[0] < 0 || linear[0] > 1 || linear[1] < 0 || linear[1] > 1 || linear[2] < 0 || linear[2] > 1)
+					high = chroma;
+				else
+					low = chroma;
+			}
+			return low;
+		}
+		@Override
+		void toLinear(double value, double a, double b, double[] rgb){
+			OKLab.toLinear(value, a, b, rgb);
+		}
+	}
+
+	/**
+	 * HSLuv, from its reference implementation: the largest chroma of sRGB is given by the lines bounding the gamut at each lightness
+	 */
+	private static final class HSLuvSpace extends LookupColorSpace {
+
+		/**
+		 * From XYZ to linear sRGB, and back
+		 */
+		private static final double[][] M = {
+				{3.240969941904521, -1.537383177570093, -0.498610760293},
+				{-0.96924363628087, 1.87596750150772, 0.041555057407175},
+				{0.055630079696993, -0.20397695888897, 1.056971514242878}};
+		private static final double[][] M_INV = {
+				{0.41239079926595, 0.35758433938387, 0.18048078840183},
+				{0.21263900587151, 0.71516867876775, 0.072192315360733},
+				{0.019330818715591, 0.11919477979462, 0.95053215224966}};
+		private static final double REF_U = 0.19783000664283, REF_V = 0.46831999493879;
+		private static final double KAPPA = 903.2962962, EPSILON = 0.0088564516;
+
+		HSLuvSpace(){ super("HSLuv"); }
+
+		@Override
+		public void fromRGB(float red, float green, float blue, float[] hsv){
+			double r = decode(red), g = decode(green), b = decode(blue);
+			double x = M_INV[0][0]*r + M_INV[0][1]*g + M_INV[0][2]*b;
+			double y = M_INV[1][0]*r + M_INV[1][1]*g + M_INV[1][2]*b;
+			double z = M_INV[2][0]*r + M_INV[2][1]*g + M_INV[2][2]*b;
+			double lightness = y <= EPSILON ? y*KAPPA : 116*Math.cbrt(y) - 16;
+			double divider = x + 15*y + 3*z;
+			hsv[0] = 0;
+			hsv[1] = 0;
+			hsv[2] = (float)Math.min(1, Math.max(0, lightness/100));
+			if (lightness < 1e-8 || lightness > 99.9999999 || divider == 0)
+				return;
+			double u = 13*lightness*(4*x/divider - REF_U), v = 13*lightness*(9*y/divider - REF_V);
+			double chroma = Math.hypot(u, v);
+			if (chroma < 1e-8)
+				return;
+			double angle = Math.atan2(v, u);
+			double max = maxChroma(lightness/100, angle);
+			hsv[0] = (float)wrap(angle/(2*Math.PI));
+			hsv[1] = max > 0 ? (float)Math.min(1, chroma/max) : 0;
+		}
+
+		@Override
+		double maxChroma(double value, double angle){
+			double lightness = 100*value;
+			if (lightness > 99.9999999 || lightness < 1e-8)
+				return 0;
+			double sub1 = Math.pow(lightness + 16, 3)/1560896;
+			double sub2 = sub1 > EPSILON ? sub1 : lightness/KAPPA;
+			double sin = Math.sin(angle), cos = Math.cos(angle);
+			double min = Double.MAX_VALUE;
+			for (double[] m : M)
+				for (int t = 0; t < 2; t++) {
+					double top1 = (284517*m[0] - 94839*m[2])*sub2;
+					double top2 = (838422*m[2] + 769860*m[1] + 731718*m[0])*lightness*sub2 - 769860*t*lightness;
+					double bottom = (632260*m[2] - 126452*m[1])*sub2 + 126452*t;
+					double length = (top2/bottom)/(sin - (top1/bottom)*cos);
+					if (length >= 0)
+						min = Math.min(min, length);
+				}
+			return min;
+		}
+		@Override
+		void toLinear(double value, double u, double v, double[] rgb){
+			double lightness = 100*value;
+			if (lightness < 1e-8) {
+				rgb[0] = rgb[1] = rgb[2] = 0;
+				return;
+			}
+			double varU = u/(13*lightness) + REF_U, varV = v/(13*lightness) + REF_V;
+			double f = (lightness + 16)/116;
+			double y = lightness <= 8 ? lightness/KAPPA : f*f*f;
+			double x = -(9*y*varU)/((varU - 4)*varV - varU*varV);
+			double z = (9*y - 15*varV*y - varV*x)/(3*varV);
+			rgb[0] = M[0][0]*x + M[0][1]*y + M[0][2]*z;
+			rgb[1] = M[1][0]*x + M[1][1]*y + M[1][2]*z;
+			rgb[2] = M[2][0]*x + M[2][1]*y + M[2][2]*z;
+		}
+	}
+}
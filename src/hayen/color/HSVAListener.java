@@ -0,0 +1,16 @@
+package hayen.color;
+
+/**
+ * Interface that any classes wishing to observe a <code>HSVAModel</code> have to implement
+ * @see hayen.color.HSVAModel
+ */
+public interface HSVAListener {
+	/**
+	 * Called every time the color of the model changes, on the thread that made the change or on another thread changing the model at the same time.</br>
+	 * The calls never overlap, and changes made meanwhile are merged in the next call
+	 * @param model : the model whose color changed
+	 * @param previous : the previous packed color
+	 * @param current : the new packed color
+	 */
+	public void colorChanged(HSVAModel model, long previous, long current);
+}
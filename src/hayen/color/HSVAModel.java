@@ -0,0 +1,303 @@
+package hayen.color;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Thread-safe model of a color in the HSB format, with an alpha channel.</br>
+ * The whole color is packed in a single <code>long</code> updated atomically, so that readers never block and never see a color half updated, whatever the
+ * threads changing it. The <em>hue</em> and the <em>saturation</em> are stored in steps of 2<sup>-17</sup>, the <em>value</em> in steps of 2<sup>-19</sup>
+ * and the alpha on 8 bits, which is far more precise than the 8 bits of each channel of the equivalent RGB color, and keeps dyadic fractions such as 0.5 exact.</br>
+ * None of the getters and setters allocates: the ARGB equivalent of the color is cached in primitive fields guarded by a sequence number, and the listeners are
+ * kept in an array replaced on every registration.</br>
+ * The listeners are notified one change at a time and in order: the thread that made a change delivers it, unless another thread is already notifying the
+ * listeners, in which case that thread delivers it too before returning. Changes made while the listeners are notified are merged, so that each event goes
+ * from the color of the previous event to the color of the model when it is delivered, and the last event always carries the final color.
+ * @see hayen.color.HSVAListener
+ */
+public class HSVAModel {
+
+	private static final int HUE_BITS = 18, SAT_BITS = 18, VALUE_BITS = 20;
+	private static final int HUE_SHIFT = 46, SAT_SHIFT = 28, VALUE_SHIFT = 8;
+	private static final int HUE_MASK = (1 << HUE_BITS) - 1, SAT_MASK = (1 << SAT_BITS) - 1, VALUE_MASK = (1 << VALUE_BITS) - 1;
+	/**
+	 * Steps per unit of each parameter, one bit being kept to represent 1 itself
+	 */
+	private static final int HUE_MAX = 1 << (HUE_BITS - 1), SAT_MAX = 1 << (SAT_BITS - 1), VALUE_MAX = 1 << (VALUE_BITS - 1);
+
+	private static final HSVAListener[] NO_LISTENERS = new HSVAListener[0];
+
+	private final AtomicLong state;
+	private volatile HSVAListener[] listeners = NO_LISTENERS;
+	/**
+	 * Number of changes not delivered yet, the thread raising it from 0 delivering them
+	 */
+	private final AtomicInteger pendingChanges = new AtomicInteger();
+	/**
+	 * Color carried by the last event, only used by the thread delivering the changes
+	 */
+	private long delivered;
+	/**
+	 * Cache of the ARGB color, valid when <code>cacheSequence</code> is even and did not change while reading it
+	 */
+	private final AtomicInteger cacheSequence = new AtomicInteger();
+	private volatile long cachedState = -1;
+	private volatile int cachedARGB;
+
+	/**
+	 * Creates a new model holding opaque white
+	 */
+	public HSVAModel(){ this(0, 0, 1, 255); }
+	/**
+	 * Creates a new model
+	 * @param hue : the <em>hue</em> of the color
+	 * @param saturation : the <em>saturation</em> of the color
+	 * @param value : the <em>value</em> of the color
+	 * @param alpha : the alpha of the color
+	 */
+	public HSVAModel(float hue, float saturation, float value, int alpha){
+		state = new AtomicLong(pack(hue, saturation, value, alpha));
+		delivered = state.get();
+	}
+
+	/**
+	 * Pack a color in a <code>long</code>.</br>
+	 * The <em>hue</em> wraps around, while the other parameters are clamped to their range
+	 * @param hue : the <em>hue</em> of the color
+	 * @param saturation : the <em>saturation</em> of the color [0, 1]
+	 * @param value : the <em>value</em> of the color [0, 1]
+	 * @param alpha : the alpha of the color [0, 255]
+	 * @return the packed color
+	 */
+	public static long pack(float hue, float saturation, float value, int alpha){
+		if (hue < 0 || hue > 1)
+			hue -= (float)Math.floor(hue);
+		long h = Math.round(hue*(double)HUE_MAX);
+		long s = Math.round(clamp(saturation)*(double)SAT_MAX);
+		long v = Math.round(clamp(value)*(double)VALUE_MAX);
+		long a = alpha < 0 ? 0 : alpha > 255 ? 255 : alpha;
+		return (h << HUE_SHIFT) | (s << SAT_SHIFT) | (v << VALUE_SHIFT) | a;
+	}
+	/**
+	 * Pack a color given in the hex ARGB format, converting it to HSB exactly like <code>Color.RGBtoHSB</code> does, without allocating
+	 * @param argb : the color in the hex ARGB format
+	 * @return the packed color
+	 */
+	public static long packARGB(int argb){
+		return pack(ColorConversion.hue(argb), ColorConversion.saturation(argb), ColorConversion.brightness(argb), argb >>> 24);
+	}
+	/**
+	 * Return the <em>hue</em> of a packed color
+	 * @param state : the packed color
+	 * @return the <em>hue</em> ([0, 1])
+	 */
+	public static float hue(long state){ return (float)(((state >>> HUE_SHIFT) & HUE_MASK) / (double)HUE_MAX); }
+	/**
+	 * Return the <em>saturation</em> of a packed color
+	 * @param state : the packed color
+	 * @return the <em>saturation</em> ([0, 1])
+	 */
+	public static float saturation(long state){ return (float)(((state >>> SAT_SHIFT) & SAT_MASK) / (double)SAT_MAX); }
+	/**
+	 * Return the <em>value</em> of a packed color
+	 * @param state : the packed color
+	 * @return the <em>value</em> ([0, 1])
+	 */
+	public static float value(long state){ return (float)(((state >>> VALUE_SHIFT) & VALUE_MASK) / (double)VALUE_MAX); }
+	/**
+	 * Return the alpha of a packed color
+	 * @param state : the packed color
+	 * @return the alpha ([0, 255])
+	 */
+	public static int alpha(long state){ return (int)(state & 0xFF); }
+	/**
+	 * Return a packed color in the hex ARGB format
+	 * @param state : the packed color
+	 * @return the color in the hex ARGB format
+	 */
+	public static int argb(long state){
+		return (alpha(state) << 24) | (ColorConversion.HSBtoRGB(hue(state), saturation(state), value(state)) & 0x00FFFFFF);
+	}
+
+	/**
+	 * Return the packed color of this model
+	 * @return the packed color
+	 */
+	public long get(){ return state.get(); }
+	/**
+	 * Replace the color of this model
+	 * @param update : the new packed color
+	 */
+	public void set(long update){
+		long previous = state.getAndSet(update);
+		changed(previous, update);
+	}
+	/**
+	 * Replace the color of this model, only if it still is the expected one
+	 * @param expect : the packed color expected
+	 * @param update : the new packed color
+	 * @return true if the color was replaced
+	 */
+	public boolean compareAndSet(long expect, long update){
+		if (!state.compareAndSet(expect, update))
+			return false;
+		changed(expect, update);
+		return true;
+	}
+	/**
+	 * Atomically update the color of this model, retrying the function until no other thread changed the color in the meantime
+	 * @param function : computes the new packed color from the current one, may be called several times
+	 * @return the new packed color
+	 */
+	public long update(LongUnaryOperator function){
+		long previous, next;
+		do {
+			previous = state.get();
+			next = function.applyAsLong(previous);
+		} while (!state.compareAndSet(previous, next));
+		changed(previous, next);
+		return next;
+	}
+
+	public float getHue(){ return hue(state.get()); }
+	public float getSaturation(){ return saturation(state.get()); }
+	public float getValue(){ return value(state.get()); }
+	public int getAlpha(){ return alpha(state.get()); }
+	/**
+	 * Return the color of this model in the hex ARGB format
+	 * @return the color in the hex ARGB format
+	 */
+	public int getARGB(){
+		long s = state.get();
+		int sequence = cacheSequence.get();
+		if ((sequence & 1) == 0 && cachedState == s) {
+			int argb = cachedARGB;
+			if (cacheSequence.get() == sequence)
+				return argb;
+		}
+		int argb = argb(s);
+		if ((sequence & 1) == 0 && cacheSequence.compareAndSet(sequence, sequence + 1)) { // another thread filling the cache just skips it
+			cachedState = s;
+			cachedARGB = argb;
+			cacheSequence.set(sequence + 2);
+		}
+		return argb;
+	}
+
+	public void setHue(float hue){
+		long previous, next;
+		do {
+			previous = state.get();
+			next = pack(hue, saturation(previous), value(previous), alpha(previous));
+		} while (!state.compareAndSet(previous, next));
+		changed(previous, next);
+	}
+	public void setSaturation(float saturation){
+		long previous, next;
+		do {
+			previous = state.get();
+			next = pack(hue(previous), saturation, value(previous), alpha(previous));
+		} while (!state.compareAndSet(previous, next));
+		changed(previous, next);
+	}
+	public void setValue(float value){
+		long previous, next;
+		do {
+			previous = state.get();
+			next = pack(hue(previous), saturation(previous), value, alpha(previous));
+		} while (!state.compareAndSet(previous, next));
+		changed(previous, next);
+	}
+	public void setAlpha(int alpha){
+		long previous, next;
+		do {
+			previous = state.get();
+			next = (previous & ~0xFFL) | (alpha < 0 ? 0 : alpha > 255 ? 255 : alpha);
+		} while (!state.compareAndSet(previous, next));
+		changed(previous, next);
+	}
+	public void setHueSaturation(float hue, float saturation){
+		long previous, next;
+		do {
+			previous = state.get();
+			next = pack(hue, saturation, value(previous), alpha(previous));
+		} while (!state.compareAndSet(previous, next));
+		changed(previous, next);
+	}
+	public void setColor(float hue, float saturation, float value, int alpha){
+		set(pack(hue, saturation, value, alpha));
+	}
+	/**
+	 * Replace the color of this model by a color given in the hex ARGB format
+	 * @param argb : the color in the hex ARGB format
+	 */
+	public void setARGB(int argb){
+		set(packARGB(argb));
+	}
+
+	/**
+	 * Register a listener notified every time the color of this model changes
+	 * @param l : the listener
+	 */
+	public synchronized void addListener(HSVAListener l){
+		for (HSVAListener listener : listeners)
+			if (listener == l)
+				return;
+		HSVAListener[] update = Arrays.copyOf(listeners, listeners.length + 1);
+		update[listeners.length] = l;
+		listeners = update;
+	}
+	/**
+	 * Remove a listener from this model
+	 * @param l : the listener
+	 */
+	public synchronized void removeListener(HSVAListener l){
+		for (int i = 0; i < listeners.length; i++)
+			if (listeners[i] == l) {
+				HSVAListener[] update = new HSVAListener[listeners.length - 1];
+				System.arraycopy(listeners, 0, update, 0, i);
+				System.arraycopy(listeners, i + 1, update, i, update.length - i);
+				listeners = update;
+				return;
+			}
+	}
+
+	/**
+	 * Deliver a change, or leave it to the thread already delivering the changes.</br>
+	 * That thread keeps delivering the current color until no change is pending. If a listener throws, the exception is propagated and the changes still
+	 * pending are delivered with the next one
+	 */
+	private void changed(long previous, long current){
+		if (previous == current || pendingChanges.getAndIncrement() != 0)
+			return;
+		int pending = 1;
+		try {
+			do {
+				long color = state.get();
+				if (color != delivered) {
+					long last = delivered;
+					delivered = color;
+					fireColorChanged(last, color);
+				}
+			} while ((pending = pendingChanges.addAndGet(-pending)) != 0);
+		} catch (RuntimeException | Error e) {
+			pendingChanges.set(0);
+			throw e;
+		}
+	}
+	private void fireColorChanged(long previous, long current){
+		HSVAListener[] listeners = this.listeners;
+		for (int i = 0; i < listeners.length; i++)
+			listeners[i].colorChanged(this, previous, current);
+	}
+
+	private static float clamp(float val){
+		if (val < 0)
+			return 0;
+		if (val > 1)
+			return 1;
+		return val;
+	}
+}
@@ -0,0 +1,145 @@
+package hayen.color;
+
+import java.util.stream.IntStream;
+
+/**
+ * Color space made of a lightness and an opponent color plane, whose chromatic circle is scaled at each <em>hue</em> and lightness to the largest chroma
+ * of sRGB. Finding that chroma is what makes these spaces expensive, so it is looked up in a table sampling it.</br>
+ * The table samples the largest chroma on a regular grid of <em>value</em> and <em>hue</em>. It is built in parallel the first time a color is rendered,
+ * and shared by every user of the space. Colors sharing the same <em>value</em>, such as the chromatic circle of a wheel, are converted from the row of the table at that
+ * <em>value</em>, interpolated once with the cosine and sine of each sampled <em>hue</em>: each color then costs a linear interpolation, the closed-form
+ * conversion of its point of the plane to linear sRGB, and a lookup of the sRGB transfer function. The colors are within one unit per channel of the exact
+ * conversion, apart from a few points of the edge of the circle where the largest chroma changes abruptly.
+ * @see hayen.color.ColorSpace
+ */
+abstract class LookupColorSpace extends ColorSpace {
+
+	/**
+	 * Intervals of the grid along the <em>hue</em> and the <em>value</em>
+	 */
+	static final int HUE_STEPS = 1024, VALUE_STEPS = 256;
+	/**
+	 * Intervals of the table of the sRGB transfer function, fine enough for the steepest part of the function, near black, to move by less than a fifth of a
+	 * level per interval
+	 */
+	private static final int ENCODE_STEPS = 16384;
+	private static final float[] COS = new float[HUE_STEPS + 1], SIN = new float[HUE_STEPS + 1];
+	/**
+	 * Encoded level, from 0 to 255, of the middle of each interval of linear intensity
+	 */
+	private static final byte[] ENCODE = new byte[ENCODE_STEPS + 1];
+	static {
+		for (int h = 0; h <= HUE_STEPS; h++) {
+			COS[h] = (float)Math.cos(2*Math.PI*h/HUE_STEPS);
+			SIN[h] = (float)Math.sin(2*Math.PI*h/HUE_STEPS);
+		}
+		for (int i = 0; i <= ENCODE_STEPS; i++)
+			ENCODE[i] = (byte)Math.round(255*encode(Math.min(1, (i + 0.5)/ENCODE_STEPS)));
+	}
+
+	/**
+	 * Largest chroma at each sample, row of constant <em>value</em> after row, the <em>hue</em> of 1 repeating the one of 0
+	 */
+	private volatile float[] table;
+
+	LookupColorSpace(String name){ super(name); }
+
+	/**
+	 * Return the largest chroma of sRGB at a <em>value</em> and <em>hue</em>, exactly
+	 * @param value : the <em>value</em> [0, 1]
+	 * @param angle : the <em>hue</em> angle, in radians
+	 * @return the chroma, in the units of the plane of the space
+	 */
+	abstract double maxChroma(double value, double angle);
+	/**
+	 * Convert a point of the opponent plane to linear sRGB
+	 * @param value : the <em>value</em> of the plane [0, 1]
+	 * @param a : the abscissa of the point, chroma times the cosine of the <em>hue</em> angle
+	 * @param b : the ordinate of the point, chroma times the sine of the <em>hue</em> angle
+	 * @param rgb : receives the linear intensities of <em>red</em>, <em>green</em> and <em>blue</em>, which can be slightly out of [0, 1]
+	 */
+	abstract void toLinear(double value, double a, double b, double[] rgb);
+
+	@Override
+	public void toRGB(float hue, float saturation, float value, float[] rgb){
+		double[] linear = new double[3];
+		double angle = 2*Math.PI*wrap(hue);
+		double chroma = saturation*maxChroma(value, angle);
+		toLinear(value, chroma*Math.cos(angle), chroma*Math.sin(angle), linear);
+		for (int c = 0; c < 3; c++)
+			rgb[c] = (float)encode(Math.min(1, Math.max(0, linear[c])));
+	}
+	@Override
+	public int toRGB(float hue, float saturation, float value){
+		float[] table = table();
+		float v = clamp(value)*VALUE_STEPS, h = (float)wrap(hue)*HUE_STEPS;
+		int vi = Math.min(VALUE_STEPS - 1, (int)v), hi = Math.min(HUE_STEPS - 1, (int)h);
+		float fv = v - vi, fh = h - hi;
+		int i = vi*(HUE_STEPS + 1) + hi, j = i + HUE_STEPS + 1;
+		float low = table[i] + (table[i + 1] - table[i])*fh, high = table[j] + (table[j + 1] - table[j])*fh;
+		double chroma = clamp(saturation)*(low + (high - low)*fv), angle = 2*Math.PI*wrap(hue);
+		double[] linear = new double[3];
+		toLinear(clamp(value), chroma*Math.cos(angle), chroma*Math.sin(angle), linear);
+		return pack(linear);
+	}
+	@Override
+	public void toRGB(float[] hue, float[] saturation, float value, int[] argb, int[] index, int length){
+		float[] table = table();
+		value = clamp(value);
+		float v = value*VALUE_STEPS;
+		int vi = Math.min(VALUE_STEPS - 1, (int)v);
+		float fv = v - vi;
+		// largest point of the plane at each sampled hue
+		float[] a = new float[HUE_STEPS + 1], b = new float[HUE_STEPS + 1];
+		for (int h = 0, low = vi*(HUE_STEPS + 1), high = low + HUE_STEPS + 1; h <= HUE_STEPS; h++) {
+			float chroma = table[low + h] + (table[high + h] - table[low + h])*fv;
+			a[h] = chroma*COS[h];
+			b[h] = chroma*SIN[h];
+		}
+
+		double[] linear = new double[3];
+		for (int k = 0; k < length; k++) {
+			float h = hue[k], s = clamp(saturation[k]);
+			h = (h < 0 || h >= 1 ? h - (float)Math.floor(h) : h)*HUE_STEPS;
+			int hi = Math.min(HUE_STEPS - 1, (int)h);
+			float fh = h - hi;
+			toLinear(value, s*(a[hi] + (a[hi + 1] - a[hi])*fh), s*(b[hi] + (b[hi + 1] - b[hi])*fh), linear);
+			argb[index[k]] = pack(linear);
+		}
+	}
+
+	/**
+	 * Return an opaque color in the hex ARGB format from linear intensities, through the table of the transfer function
+	 */
+	private static int pack(double[] linear){
+		return 0xFF000000 | (level(linear[0]) << 16) | (level(linear[1]) << 8) | level(linear[2]);
+	}
+	private static int level(double linear){
+		return ENCODE[linear <= 0 ? 0 : linear >= 1 ? ENCODE_STEPS : (int)(linear*ENCODE_STEPS)] & 0xFF;
+	}
+	private static float clamp(float x){
+		return x < 0 ? 0 : x > 1 ? 1 : x;
+	}
+
+	private float[] table(){
+		float[] table = this.table;
+		if (table == null) {
+			synchronized (this) {
+				table = this.table;
+				if (table == null)
+					this.table = table = build();
+			}
+		}
+		return table;
+	}
+	private float[] build(){
+		final float[] table = new float[(VALUE_STEPS + 1)*(HUE_STEPS + 1)];
+		IntStream.rangeClosed(0, VALUE_STEPS).parallel().forEach(v -> {
+			int i = v*(HUE_STEPS + 1);
+			for (int h = 0; h < HUE_STEPS; h++)
+				table[i + h] = (float)maxChroma(v/(double)VALUE_STEPS, 2*Math.PI*h/HUE_STEPS);
+			table[i + HUE_STEPS] = table[i];
+		});
+		return table;
+	}
+}
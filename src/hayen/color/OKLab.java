@@ -0,0 +1,72 @@
+package hayen.color;
+
+/**
+ * Conversions between sRGB and the OKLab perceptual color space, in which the euclidean distance between two colors follows how different they look.</br>
+ * The <em>L</em> component is in [0, 1], <em>a</em> and <em>b</em> roughly in [-0.4, 0.4].
+ * @see hayen.color.Palette
+ * @see hayen.color.ColorSpace#OKLCH
+ */
+final class OKLab {
+
+	/**
+	 * Linear intensity of each 8 bits sRGB level
+	 */
+	private static final float[] LINEAR = new float[256];
+	static {
+		for (int i = 0; i < 256; i++) {
+			double c = i/255d;
+			LINEAR[i] = (float)(c <= 0.04045 ? c/12.92 : Math.pow((c + 0.055)/1.055, 2.4));
+		}
+	}
+
+	private OKLab(){}
+
+	/**
+	 * Convert a color to OKLab
+	 * @param argb : the color in the hex ARGB format, its alpha is ignored
+	 * @param lab : receives the <em>L</em>, <em>a</em> and <em>b</em> components
+	 * @param offset : the index of <em>L</em> in <code>lab</code>
+	 */
+	static void fromRGB(int argb, float[] lab, int offset){
+		float r = LINEAR[(argb >>> 16) & 0xFF], g = LINEAR[(argb >>> 8) & 0xFF], b = LINEAR[argb & 0xFF];
+		double l = Math.cbrt(0.4122214708f*r + 0.5363325363f*g + 0.0514459929f*b);
+		double m = Math.cbrt(0.2119034982f*r + 0.6806995451f*g + 0.1073969566f*b);
+		double s = Math.cbrt(0.0883024619f*r + 0.2817188376f*g + 0.6299787005f*b);
+		lab[offset] = (float)(0.2104542553*l + 0.7936177850*m - 0.0040720468*s);
+		lab[offset + 1] = (float)(1.9779984951*l - 2.4285922050*m + 0.4505937099*s);
+		lab[offset + 2] = (float)(0.0259040371*l + 0.7827717662*m - 0.8086757660*s);
+	}
+	/**
+	 * Convert a color in linear sRGB to OKLab
+	 * @param red : the linear intensity of <em>red</em>
+	 * @param green : the linear intensity of <em>green</em>
+	 * @param blue : the linear intensity of <em>blue</em>
+	 * @param lab : receives the <em>L</em>, <em>a</em> and <em>b</em> components
+	 */
+	static void fromLinear(double red, double green, double blue, double[] lab){
+		double l = Math.cbrt(0.4122214708*red + 0.5363325363*green + 0.0514459929*blue);
+		double m = Math.cbrt(0.2119034982*red + 0.6806995451*green + 0.1073969566*blue);
+		double s = Math.cbrt(0.0883024619*red + 0.2817188376*green + 0.6299787005*blue);
+		lab[0] = 0.2104542553*l + 0.7936177850*m - 0.0040720468*s;
+		lab[1] = 1.9779984951*l - 2.4285922050*m + 0.4505937099*s;
+		lab[2] = 0.0259040371*l + 0.7827717662*m - 0.8086757660*s;
+	}
+	/**
+	 * Convert a color in OKLab to linear sRGB, which is out of [0, 1] for the colors sRGB cannot display
+	 * @param lightness : the <em>L</em> component
+	 * @param a : the <em>a</em> component
+	 * @param b : the <em>b</em> component
+	 * @param rgb : receives the linear intensities of <em>red</em>, <em>green</em> and <em>blue</em>
+	 */
+	static void toLinear(double lightness, double a, double b, double[] rgb){
+		double l = lightness + 0.3963377774*a + 0.2158037573*b;
+		double m = lightness - 0.1055613458*a - 0.0638541728*b;
+		double s = lightness - 0.0894841775*a - 1.2914855480*b;
+		l = l*l*l;
+		m = m*m*m;
+		s = s*s*s;
+		rgb[0] = 4.0767416621*l - 3.3077115913*m + 0.2309699292*s;
+		rgb[1] = -1.2684380046*l + 2.6097574011*m - 0.3413193965*s;
+		rgb[2] = -0.0041960863*l - 0.7034186147*m + 1.7076147010*s;
+	}
+}
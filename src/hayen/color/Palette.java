@@ -0,0 +1,189 @@
+package hayen.color;
+
+/**
+ * Immutable set of colors a selection can be snapped to.</br>
+ * The colors are indexed by a k-d tree in the OKLab perceptual color space, so that the nearest one to any color, as it would be judged by eye, is found
+ * in a few dozen distance computations even for palettes of tens of thousands of colors. The last color looked up is remembered, which makes the lookups
+ * of a mouse dragged over the same color free. Lookups can be made from any thread, and do not allocate once a thread made its first one.
+ * @see hayen.ui.ColorWheel#setPalette(Palette)
+ */
+public final class Palette {
+
+	/**
+	 * OKLab components of the color looked up, one buffer per thread
+	 */
+	private static final ThreadLocal<float[]> QUERY = ThreadLocal.withInitial(() -> new float[3]);
+
+	private final int[] colors;
+	/**
+	 * Tree order of the colors: the node of a range is its middle, the colors before it are on the lower side of its split and the ones after on its
+	 * upper side
+	 */
+	private final int[] order;
+	/**
+	 * OKLab components of the colors, three per node in tree order
+	 */
+	private final float[] lab;
+	/**
+	 * Component each node splits on
+	 */
+	private final byte[] axes;
+	/**
+	 * Last color looked up in the high bits, the index of its nearest color plus one in the low bits, 0 before the first lookup. Since no index is -1,
+	 * the empty value cannot be taken for any color
+	 */
+	private volatile long last;
+
+	/**
+	 * Creates a palette
+	 * @param argb : the colors of the palette in the hex ARGB format. Their alpha is kept but ignored by the lookups
+	 * @throws IllegalArgumentException if there is no color
+	 */
+	public Palette(int... argb){
+		if (argb.length == 0)
+			throw new IllegalArgumentException("empty palette");
+		colors = argb.clone();
+		int n = colors.length;
+		order = new int[n];
+		lab = new float[3*n];
+		axes = new byte[n];
+		float[] points = new float[3*n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+			OKLab.fromRGB(colors[i], points, 3*i);
+		}
+		build(points, 0, n);
+		for (int i = 0; i < n; i++)
+			System.arraycopy(points, 3*order[i], lab, 3*i, 3);
+	}
+
+	/**
+	 * Return the number of colors of this palette
+	 * @return the number of colors
+	 */
+	public int size(){ return colors.length; }
+	/**
+	 * Return a color of this palette
+	 * @param index : the index of the color, in the order the palette was created with
+	 * @return the color in the hex ARGB format
+	 */
+	public int getColor(int index){ return colors[index]; }
+
+	/**
+	 * Return the color of this palette nearest to a color
+	 * @param argb : the color in the hex ARGB format, its alpha is ignored
+	 * @return the nearest color of the palette, in the hex ARGB format
+	 */
+	public int nearest(int argb){ return colors[nearestIndex(argb)]; }
+	/**
+	 * Return the index of the color of this palette nearest to a color
+	 * @param argb : the color in the hex ARGB format, its alpha is ignored
+	 * @return the index of the nearest color, in the order the palette was created with
+	 */
+	public int nearestIndex(int argb){
+		long last = this.last;
+		int rgb = argb | 0xFF000000;
+		if ((int)last != 0 && (int)(last >>> 32) == rgb)
+			return (int)last - 1;
+		float[] q = QUERY.get();
+		OKLab.fromRGB(rgb, q, 0);
+		int index = order[search(0, colors.length, q[0], q[1], q[2], -1, Float.POSITIVE_INFINITY)];
+		this.last = ((long)rgb << 32) | (index + 1);
+		return index;
+	}
+
+	/**
+	 * Find the node nearest to a point in a range of the tree
+	 * @param best : the nearest node found so far, -1 if none
+	 * @param bestDistance : its square distance to the point
+	 * @return the nearest node
+	 */
+	private int search(int lo, int hi, float l, float a, float b, int best, float bestDistance){
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1, i = 3*mid;
+			float dl = l - lab[i], da = a - lab[i + 1], db = b - lab[i + 2];
+			float distance = dl*dl + da*da + db*db;
+			if (distance < bestDistance) {
+				best = mid;
+				bestDistance = distance;
+			}
+			float diff;
+			switch (axes[mid]) {
+				case 0: diff = dl; break;
+				case 1: diff = da; break;
+				default: diff = db; break;
+			}
+			// nearer side first, then the other one only if the splitting plane is closer than the best node
+			if (diff < 0) {
+				best = search(lo, mid, l, a, b, best, bestDistance);
+				lo = mid + 1;
+			}
+			else {
+				best = search(mid + 1, hi, l, a, b, best, bestDistance);
+				hi = mid;
+			}
+			i = 3*best;
+			dl = l - lab[i]; da = a - lab[i + 1]; db = b - lab[i + 2];
+			bestDistance = dl*dl + da*da + db*db;
+			if (diff*diff >= bestDistance)
+				break;
+		}
+		return best;
+	}
+
+	/**
+	 * Order a range of the tree, splitting it on its widest component around its median
+	 * @param points : the OKLab components of the colors, in the order they were created with
+	 */
+	private void build(float[] points, int lo, int hi){
+		if (hi - lo < 2)
+			return;
+		int axis = widestAxis(points, lo, hi);
+		int mid = (lo + hi) >>> 1;
+		select(points, axis, lo, hi - 1, mid);
+		axes[mid] = (byte)axis;
+		build(points, lo, mid);
+		build(points, mid + 1, hi);
+	}
+	private int widestAxis(float[] points, int lo, int hi){
+		float[] min = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY};
+		float[] max = {Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+		for (int i = lo; i < hi; i++)
+			for (int c = 0; c < 3; c++) {
+				float v = points[3*order[i] + c];
+				min[c] = Math.min(min[c], v);
+				max[c] = Math.max(max[c], v);
+			}
+		int axis = 0;
+		for (int c = 1; c < 3; c++)
+			if (max[c] - min[c] > max[axis] - min[axis])
+				axis = c;
+		return axis;
+	}
+	/**
+	 * Partially sort a range of <code>order</code> on a component, so that the k-th color is at its place and the ones before it are not greater
+	 */
+	private void select(float[] points, int axis, int lo, int hi, int k){
+		while (hi > lo) {
+			float pivot = points[3*order[(lo + hi) >>> 1] + axis];
+			int i = lo, j = hi;
+			while (i <= j) {
+				while (points[3*order[i] + axis] < pivot)
+					i++;
+				while (points[3*order[j] + axis] > pivot)
+					j--;
+				if (i <= j) {
+					int t = order[i];
+					order[i++] = order[j];
+					order[j--] = t;
+				}
+			}
+			if (k <= j)
+				hi = j;
+			else if (k >= i)
+				lo = i;
+			else
+				return;
+		}
+	}
+}
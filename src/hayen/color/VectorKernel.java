@@ -0,0 +1,136 @@
+package hayen.color;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * HSB to RGB conversion kernel using the Vector API, converting a full SIMD register of colors at once.</br>
+ * The sextant of the <em>hue</em> is selected with masked blends instead of branches, and every operation is the same <code>float</code> operation as in
+ * <code>ColorConversion.HSBtoRGB</code>, in the same order, so that the results are exactly the same. Only loaded by <code>ColorConversion</code> when
+ * the <code>jdk.incubator.vector</code> module is present.
+ * @see hayen.color.ColorConversion#isVectorized()
+ */
+final class VectorKernel implements ColorConversion.Kernel {
+
+	private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+	/**
+	 * Smallest magnitude from which every <code>float</code> is an integer
+	 */
+	private static final float INTEGRAL = 1 << 23;
+	private static final FloatVector ZERO = FloatVector.zero(FLOATS), ONE = FloatVector.broadcast(FLOATS, 1.0f);
+
+	/**
+	 * @throws UnsupportedOperationException if the platform has no SIMD register wide enough to be worth it
+	 */
+	VectorKernel(){
+		if (FLOATS.length() < 4)
+			throw new UnsupportedOperationException("no SIMD support");
+	}
+
+	@Override
+	public void toRGB(float[] hue, float[] saturation, float[] brightness, int hsbOffset, int[] argb, int offset, int length){
+		int i = 0;
+		for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+			FloatVector h = FloatVector.fromArray(FLOATS, hue, hsbOffset + i);
+			FloatVector s = FloatVector.fromArray(FLOATS, saturation, hsbOffset + i);
+			FloatVector v = FloatVector.fromArray(FLOATS, brightness, hsbOffset + i);
+			if (unusual(h, s, v))
+				for (int j = i; j < i + FLOATS.length(); j++)
+					argb[offset + j] = ColorConversion.HSBtoRGB(hue[hsbOffset + j], saturation[hsbOffset + j], brightness[hsbOffset + j]);
+			else
+				convert(h, s, v).intoArray(argb, offset + i);
+		}
+		for (; i < length; i++)
+			argb[offset + i] = ColorConversion.HSBtoRGB(hue[hsbOffset + i], saturation[hsbOffset + i], brightness[hsbOffset + i]);
+	}
+
+	@Override
+	public void toRGB(float[] hue, float[] saturation, float brightness, int[] argb, int[] index, int length){
+		FloatVector v = FloatVector.broadcast(FLOATS, brightness);
+		int i = 0;
+		for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+			FloatVector h = FloatVector.fromArray(FLOATS, hue, i);
+			FloatVector s = FloatVector.fromArray(FLOATS, saturation, i);
+			if (unusual(h, s, v))
+				for (int j = i; j < i + FLOATS.length(); j++)
+					argb[index[j]] = ColorConversion.HSBtoRGB(hue[j], saturation[j], brightness);
+			else
+				convert(h, s, v).intoArray(argb, 0, index, i);
+		}
+		for (; i < length; i++)
+			argb[index[i]] = ColorConversion.HSBtoRGB(hue[i], saturation[i], brightness);
+	}
+
+	/**
+	 * Return if some of the colors are out of the range handled by the kernel, in which case they are converted by the scalar code
+	 * @return true if a <em>hue</em> is not finite, or a <em>saturation</em> or a <em>value</em> is out of [0, 1]
+	 */
+	private static boolean unusual(FloatVector hue, FloatVector saturation, FloatVector brightness){
+		// NaN fails every comparison, and is kept by min and max
+		return !hue.abs().compare(VectorOperators.LT, INTEGRAL)
+				.and(saturation.min(brightness).compare(VectorOperators.GE, 0))
+				.and(saturation.max(brightness).compare(VectorOperators.LE, 1))
+				.allTrue();
+	}
+
+	/**
+	 * Convert colors whose <em>hue</em> is smaller than 2<sup>23</sup> and whose other parameters are in [0, 1]
+	 */
+	private static IntVector convert(FloatVector hue, FloatVector saturation, FloatVector brightness){
+		FloatVector h = hue.sub(floor(hue)).mul(6.0f);
+		FloatVector sextant = floorPositive(h);
+		FloatVector f = h.sub(sextant);
+		FloatVector p = brightness.mul(ONE.sub(saturation));
+		FloatVector q = brightness.mul(ONE.sub(saturation.mul(f)));
+		FloatVector t = brightness.mul(ONE.sub(saturation.mul(ONE.sub(f))));
+
+		// a hue just below 1 can round to the sextant 6, which is black like in the scalar switch, unless the saturation is 0 and the color grey.
+		// p, q and t are all equal to the value for a grey, so any other sextant gives the right color
+		VectorMask<Float> s6 = sextant.eq(6);
+		sextant = sextant.blend(ZERO, s6.and(saturation.eq(0)));
+		VectorMask<Float> s0 = sextant.eq(0), s1 = sextant.eq(1), s2 = sextant.eq(2);
+		VectorMask<Float> s3 = sextant.eq(3), s4 = sextant.eq(4), s5 = sextant.eq(5);
+		FloatVector r = ZERO.blend(brightness, s0.or(s5)).blend(q, s1).blend(p, s2.or(s3)).blend(t, s4);
+		FloatVector g = ZERO.blend(t, s0).blend(brightness, s1.or(s2)).blend(q, s3).blend(p, s4.or(s5));
+		FloatVector b = ZERO.blend(p, s0.or(s1)).blend(t, s2).blend(brightness, s3.or(s4)).blend(q, s5);
+		return pack(r, g, b);
+	}
+
+	/**
+	 * Return the opaque colors of the levels of each channel, in [0, 1]
+	 */
+	private static IntVector pack(FloatVector r, FloatVector g, FloatVector b){
+		return level(r).mul(1 << 16).or(level(g).mul(1 << 8)).or(level(b)).or(0xFF000000);
+	}
+
+	/**
+	 * Return <code>(int)(x * 255.0f + 0.5f)</code> for each lane, with <code>x</code> in [0, 1].</br>
+	 * Adding 2<sup>23</sup> to the level leaves its integer part in the low bits of the mantissa, which saves a conversion the JIT may not vectorize
+	 */
+	private static IntVector level(FloatVector x){
+		FloatVector y = x.mul(255.0f).add(0.5f);
+		FloatVector shifted = y.add(INTEGRAL);
+		shifted = shifted.blend(shifted.sub(1.0f), shifted.sub(INTEGRAL).compare(VectorOperators.GT, y));
+		return shifted.viewAsIntegralLanes().and(0xFF);
+	}
+
+	/**
+	 * Return <code>Math.floor(x)</code> for each lane, with <code>|x|</code> smaller than 2<sup>23</sup>.</br>
+	 * Adding and removing 2<sup>23</sup> rounds to the closest integer, which is then corrected when it is above <code>x</code>
+	 */
+	private static FloatVector floor(FloatVector x){
+		FloatVector rounded = x.abs().add(INTEGRAL).sub(INTEGRAL);
+		rounded = rounded.blend(rounded.neg(), x.compare(VectorOperators.LT, 0));
+		return rounded.blend(rounded.sub(1.0f), rounded.compare(VectorOperators.GT, x));
+	}
+	/**
+	 * Return <code>Math.floor(x)</code> for each lane, with <code>x</code> in [0, 2<sup>23</sup>[
+	 */
+	private static FloatVector floorPositive(FloatVector x){
+		FloatVector rounded = x.add(INTEGRAL).sub(INTEGRAL);
+		return rounded.blend(rounded.sub(1.0f), rounded.compare(VectorOperators.GT, x));
+	}
+}
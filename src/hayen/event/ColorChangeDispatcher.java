@@ -0,0 +1,192 @@
+package hayen.event;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.Collection;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Policy deciding when and on which thread the <code>ColorChangeEvent</code>s of a <code>ColorWheel</code> are delivered to its listeners.</br>
+ * Whatever the policy, the listeners always end up receiving the last color selected. A dispatcher keeps the state of the events it delays, so each
+ * <code>ColorWheel</code> needs its own instance.
+ * @see hayen.ui.ColorWheel#setColorChangeDispatcher(ColorChangeDispatcher)
+ * @see hayen.event.ColorChangeEvent
+ */
+public abstract class ColorChangeDispatcher {
+
+	/**
+	 * Receiver of the time the listeners take to handle the events
+	 * @see #setListenerTimer(ListenerTimer)
+	 */
+	public interface ListenerTimer {
+		/**
+		 * Called each time a listener handled a <code>ColorChangeEvent</code>
+		 * @param listener : the listener
+		 * @param nanos : the time it took, in nanoseconds
+		 */
+		void listenerNotified(ColorChangeListener listener, long nanos);
+	}
+
+	private static volatile ListenerTimer timer;
+
+	/**
+	 * Set the receiver of the time each listener takes to handle an event, for all the dispatchers. This is how the <code>WheelMetrics</code> are recorded
+	 * @param timer : the receiver, null to stop timing the listeners
+	 */
+	public static void setListenerTimer(ListenerTimer timer){
+		ColorChangeDispatcher.timer = timer;
+	}
+
+	/**
+	 * Return a dispatcher delivering every event right away, on the thread that changed the color
+	 * @return a synchronous dispatcher
+	 */
+	public static ColorChangeDispatcher synchronous(){
+		return new Synchronous();
+	}
+	/**
+	 * Return a dispatcher delivering at most one event per interval, on the event dispatch thread.</br>
+	 * The first change after a quiet period is delivered right away, the following ones are merged and only the last color is delivered at the end of the interval
+	 * @param interval : the minimal time between two events, in milliseconds
+	 * @return a coalescing dispatcher
+	 */
+	public static ColorChangeDispatcher coalesced(int interval){
+		return new Coalesced(interval);
+	}
+	/**
+	 * Return a dispatcher delivering the events on an <code>Executor</code>.</br>
+	 * At most one delivery is queued or running at a time: the colors selected while the listeners are busy are merged and only the last one is delivered
+	 * @param executor : the executor running the listeners
+	 * @return an asynchronous dispatcher
+	 */
+	public static ColorChangeDispatcher asynchronous(Executor executor){
+		if (executor == null)
+			throw new NullPointerException("executor");
+		return new Asynchronous(executor);
+	}
+
+	/**
+	 * Called by the <code>ColorWheel</code> every time its selected color changes
+	 * @param source : the component whose color changed
+	 * @param argb : the new color, in the hex ARGB format
+	 * @param listeners : the listeners to notify, must support being iterated while it is modified
+	 */
+	public abstract void dispatch(Component source, int argb, Collection<ColorChangeListener> listeners);
+
+	/**
+	 * Send one <code>ColorChangeEvent</code> to all the listeners.</br>
+	 * The time each listener takes is given to the <code>ListenerTimer</code> if one is set
+	 * @param source : the component whose color changed
+	 * @param argb : the color, in the hex ARGB format
+	 * @param listeners : the listeners to notify
+	 */
+	protected static void deliver(Component source, int argb, Collection<ColorChangeListener> listeners){
+		if (listeners.isEmpty())
+			return;
+		ColorChangeEvent e = new ColorChangeEvent(source, new Color(argb, true));
+		ListenerTimer timer = ColorChangeDispatcher.timer;
+		if (timer == null) {
+			for (ColorChangeListener l : listeners)
+				l.colorChanged(e);
+			return;
+		}
+		for (ColorChangeListener l : listeners) {
+			long start = System.nanoTime();
+			try {
+				l.colorChanged(e);
+			} finally {
+				timer.listenerNotified(l, System.nanoTime() - start);
+			}
+		}
+	}
+
+	private static final class Synchronous extends ColorChangeDispatcher {
+		@Override
+		public void dispatch(Component source, int argb, Collection<ColorChangeListener> listeners){
+			deliver(source, argb, listeners);
+		}
+	}
+
+	private static final class Coalesced extends ColorChangeDispatcher {
+		private final Timer timer;
+		private Component source;
+		private Collection<ColorChangeListener> listeners;
+		private int latest;
+		private boolean pending;
+
+		private Coalesced(int interval){
+			timer = new Timer(Math.max(1, interval), e -> tick());
+		}
+
+		@Override
+		public void dispatch(Component source, int argb, Collection<ColorChangeListener> listeners){
+			boolean now;
+			synchronized (this) {
+				this.source = source;
+				this.listeners = listeners;
+				latest = argb;
+				pending = true;
+				now = !timer.isRunning() && SwingUtilities.isEventDispatchThread();
+				timer.start();
+			}
+			if (now)
+				tick();
+		}
+
+		/**
+		 * Deliver the last color if it was not yet, stop waking up otherwise
+		 */
+		private void tick(){
+			Component source;
+			Collection<ColorChangeListener> listeners;
+			int argb;
+			synchronized (this) {
+				if (!pending) {
+					timer.stop();
+					return;
+				}
+				pending = false;
+				source = this.source;
+				listeners = this.listeners;
+				argb = latest;
+			}
+			deliver(source, argb, listeners);
+		}
+	}
+
+	private static final class Asynchronous extends ColorChangeDispatcher implements Runnable {
+		private final Executor executor;
+		private final AtomicInteger missed = new AtomicInteger();
+		private volatile Component source;
+		private volatile Collection<ColorChangeListener> listeners;
+		private volatile int latest;
+
+		private Asynchronous(Executor executor){
+			this.executor = executor;
+		}
+
+		@Override
+		public void dispatch(Component source, int argb, Collection<ColorChangeListener> listeners){
+			this.source = source;
+			this.listeners = listeners;
+			latest = argb;
+			if (missed.getAndIncrement() == 0)
+				executor.execute(this);
+		}
+
+		@Override
+		public void run(){
+			int seen = missed.get();
+			do {
+				try {
+					deliver(source, latest, listeners);
+				} catch (RuntimeException e) { // keep delivering the next colors
+					Thread thread = Thread.currentThread();
+					thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+				}
+				seen = missed.addAndGet(-seen);
+			} while (seen != 0);
+		}
+	}
+}
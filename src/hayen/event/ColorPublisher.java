@@ -0,0 +1,128 @@
+package hayen.event;
+
+import java.awt.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <code>Flow.Publisher</code> of the colors selected on a <code>ColorWheel</code>.</br>
+ * Subscribers are served on an <code>Executor</code> and only receive as many colors as they requested. A subscriber that cannot keep up does not receive
+ * the colors it missed, only the latest one, as soon as it requests more: the last color selected is always delivered.
+ * @see hayen.ui.ColorWheel#getColorPublisher()
+ */
+public class ColorPublisher implements Flow.Publisher<Color> {
+
+	private final Executor executor;
+	private final CopyOnWriteArrayList<LatestSubscription> subscriptions = new CopyOnWriteArrayList<LatestSubscription>();
+
+	/**
+	 * Creates a new publisher serving its subscribers on the common fork-join pool
+	 */
+	public ColorPublisher(){ this(ForkJoinPool.commonPool()); }
+	/**
+	 * Creates a new publisher
+	 * @param executor : the executor on which the subscribers receive the colors
+	 */
+	public ColorPublisher(Executor executor){
+		if (executor == null)
+			throw new NullPointerException("executor");
+		this.executor = executor;
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super Color> subscriber){
+		if (subscriber == null)
+			throw new NullPointerException("subscriber");
+		LatestSubscription subscription = new LatestSubscription(subscriber);
+		subscriptions.add(subscription);
+		subscriber.onSubscribe(subscription);
+	}
+
+	/**
+	 * Return if at least one subscriber is listening
+	 * @return true if there is a subscriber
+	 */
+	public boolean hasSubscribers(){ return !subscriptions.isEmpty(); }
+
+	/**
+	 * Publish a new color to all the subscribers
+	 * @param argb : the color, in the hex ARGB format
+	 */
+	public void publish(int argb){
+		for (LatestSubscription subscription : subscriptions)
+			subscription.offer(argb);
+	}
+
+	/**
+	 * Subscription keeping only the latest color not yet delivered
+	 */
+	private final class LatestSubscription implements Flow.Subscription, Runnable {
+		private final Flow.Subscriber<? super Color> subscriber;
+		private final AtomicLong demand = new AtomicLong();
+		private final AtomicInteger work = new AtomicInteger();
+		private volatile int latest;
+		private volatile boolean available, cancelled;
+
+		private LatestSubscription(Flow.Subscriber<? super Color> subscriber){
+			this.subscriber = subscriber;
+		}
+
+		private void offer(int argb){
+			latest = argb;
+			available = true;
+			schedule();
+		}
+
+		@Override
+		public void request(long n){
+			if (n <= 0) {
+				cancel();
+				subscriber.onError(new IllegalArgumentException("non-positive request: " + n));
+				return;
+			}
+			long current, next;
+			do {
+				current = demand.get();
+				next = current + n < 0 ? Long.MAX_VALUE : current + n;
+			} while (!demand.compareAndSet(current, next));
+			schedule();
+		}
+		@Override
+		public void cancel(){
+			cancelled = true;
+			subscriptions.remove(this);
+		}
+
+		private void schedule(){
+			if (work.getAndIncrement() == 0)
+				executor.execute(this);
+		}
+
+		/**
+		 * Deliver the latest color while there is demand for it, one thread at a time
+		 */
+		@Override
+		public void run(){
+			int missed = work.get();
+			do {
+				while (!cancelled && available && demand.get() > 0) {
+					available = false;
+					Color color = new Color(latest, true);
+					if (demand.get() != Long.MAX_VALUE)
+						demand.decrementAndGet();
+					try {
+						subscriber.onNext(color);
+					} catch (RuntimeException e) {
+						cancel();
+						subscriber.onError(e);
+					}
+				}
+				missed = work.addAndGet(-missed);
+			} while (missed != 0);
+		}
+	}
+}
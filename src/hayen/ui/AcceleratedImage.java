@@ -0,0 +1,175 @@
+package hayen.ui;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.VolatileImage;
+import java.nio.IntBuffer;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Copy of a <code>WheelImage</code> kept in a <code>VolatileImage</code>, so that drawing it on screen is a single accelerated blit.</br>
+ * A surface is kept for each <code>GraphicsConfiguration</code> the image was drawn on, so moving between screens does not convert the image again. Each surface
+ * is filled with the variant of the device scale of its screen, drawn pixel for pixel.
+ * Lost surfaces are restored from the source image. When headless, or when drawing on something else than a screen, the source image is drawn directly.</br>
+ * Java2D only has slow generic loops for the images of a <code>WheelAtlas</code>, so they are drawn through a strip of a few rows copied in a heap image.
+ * @see hayen.ui.ColorWheel
+ */
+final class AcceleratedImage {
+
+	/**
+	 * Number of times a lost surface is restored before giving up and drawing the source image
+	 */
+	private static final int MAX_ATTEMPTS = 3;
+	/**
+	 * Number of rows of the strip through which the images of an atlas are drawn
+	 */
+	private static final int STRIP_ROWS = 32;
+
+	private WheelImage source;
+	private int version;
+	private final Map<GraphicsConfiguration, Surface> surfaces = new WeakHashMap<GraphicsConfiguration, Surface>();
+	private BufferedImage strip;
+
+	/**
+	 * A surface and the version of the source it holds
+	 */
+	private static final class Surface {
+		VolatileImage image;
+		int version = -1;
+	}
+
+	/**
+	 * Change the image to draw
+	 * @param source : the new image, can be null
+	 */
+	void setSource(WheelImage source){
+		if (this.source == source)
+			return;
+		this.source = source;
+		version++;
+	}
+	/**
+	 * Notify that the pixels of the source image changed, so that the surfaces have to be copied again
+	 */
+	void invalidate(){
+		version++;
+	}
+	/**
+	 * Release all the surfaces
+	 */
+	void flush(){
+		Iterator<Surface> it = surfaces.values().iterator();
+		while (it.hasNext()) {
+			VolatileImage image = it.next().image;
+			if (image != null) // dropped after it became incompatible with its device
+				image.flush();
+			it.remove();
+		}
+		source = null;
+		strip = null;
+	}
+
+	/**
+	 * Draw the image with its top left corner at the origin
+	 * @param g2 : the graphics to draw with
+	 * @param area : the part of the image to draw, null to draw all of it
+	 */
+	void draw(Graphics2D g2, Rectangle area){
+		if (source == null)
+			return;
+		int x1 = 0, y1 = 0, x2 = source.getWidth(null), y2 = source.getHeight(null);
+		if (area != null) {
+			x1 = Math.max(x1, area.x);
+			y1 = Math.max(y1, area.y);
+			x2 = Math.min(x2, area.x + area.width);
+			y2 = Math.min(y2, area.y + area.height);
+			if (x1 >= x2 || y1 >= y2)
+				return;
+		}
+		GraphicsConfiguration gc = g2.getDeviceConfiguration();
+		if (GraphicsEnvironment.isHeadless() || gc == null || gc.getDevice().getType() != GraphicsDevice.TYPE_RASTER_SCREEN) {
+			drawSource(g2, x1, y1, x2, y2);
+			return;
+		}
+
+		Surface surface = surfaces.get(gc);
+		if (surface == null) {
+			surface = new Surface();
+			surfaces.put(gc, surface);
+		}
+		for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+			VolatileImage image = surface.image;
+			if (image == null || image.getWidth() != source.getWidth(null) || image.getHeight() != source.getHeight(null)) {
+				if (image != null)
+					image.flush();
+				image = surface.image = gc.createCompatibleVolatileImage(source.getWidth(null), source.getHeight(null), Transparency.TRANSLUCENT);
+				surface.version = -1;
+			}
+			int status = image.validate(gc);
+			if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+				image.flush();
+				surface.image = null;
+				continue;
+			}
+			if (status == VolatileImage.IMAGE_RESTORED || surface.version != version) {
+				Graphics2D g = image.createGraphics();
+				g.setComposite(AlphaComposite.Src);
+				drawSource(g, 0, 0, source.getWidth(null), source.getHeight(null));
+				g.dispose();
+				surface.version = version;
+			}
+			g2.drawImage(image, x1, y1, x2, y2, x1, y1, x2, y2, null);
+			if (!image.contentsLost())
+				return;
+			surface.version = -1;
+		}
+		drawSource(g2, x1, y1, x2, y2);
+	}
+
+	/**
+	 * Draw a part of the source image at the same place, from the variant of the scale of the graphics.</br>
+	 * Unless the graphics is rotated, a variant larger than the logical size is drawn in device space, so that each of its pixels covers one of the device
+	 */
+	private void drawSource(Graphics2D g2, int x1, int y1, int x2, int y2){
+		AffineTransform transform = g2.getTransform();
+		BufferedImage variant = source.getVariant(WheelImage.deviceScale(transform));
+		int size = source.getWidth(null);
+		if (variant.getWidth() == size) {
+			drawVariant(g2, variant, x1, y1, x2, y2);
+			return;
+		}
+		if (transform.getShearX() != 0 || transform.getShearY() != 0) {
+			g2.drawImage(variant, 0, 0, size, size, null);
+			return;
+		}
+		double scale = variant.getWidth()/(double)size;
+		Graphics2D g = (Graphics2D)g2.create();
+		g.setTransform(AffineTransform.getTranslateInstance(Math.round(transform.getTranslateX()), Math.round(transform.getTranslateY())));
+		drawVariant(g, variant, (int)Math.floor(x1*scale), (int)Math.floor(y1*scale),
+				Math.min(variant.getWidth(), (int)Math.ceil(x2*scale)), Math.min(variant.getHeight(), (int)Math.ceil(y2*scale)));
+		g.dispose();
+	}
+	/**
+	 * Draw a part of a variant at the same place
+	 */
+	private void drawVariant(Graphics2D g2, BufferedImage variant, int x1, int y1, int x2, int y2){
+		IntBuffer pixels = WheelAtlas.pixels(variant);
+		if (pixels == null) {
+			g2.drawImage(variant, x1, y1, x2, y2, x1, y1, x2, y2, null);
+			return;
+		}
+		int width = variant.getWidth();
+		if (strip == null || strip.getWidth() != width)
+			strip = new BufferedImage(width, STRIP_ROWS, BufferedImage.TYPE_INT_ARGB);
+		int[] rows = ((DataBufferInt)strip.getRaster().getDataBuffer()).getData();
+		for (int y = y1; y < y2; y += STRIP_ROWS) {
+			int height = Math.min(STRIP_ROWS, y2 - y);
+			pixels.get(y*width, rows, 0, height*width);
+			g2.drawImage(strip, x1, y, x2, y + height, x1, 0, x2, height, null);
+		}
+	}
+}
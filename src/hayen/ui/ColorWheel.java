@@ -1,22 +1,32 @@
 package hayen.ui;
 
+import hayen.color.ColorSpace;
+import hayen.color.HSVAListener;
+import hayen.color.HSVAModel;
+import hayen.color.Palette;
+import hayen.event.ColorChangeDispatcher;
 import hayen.event.ColorChangeEvent;
 import hayen.event.ColorChangeListener;
+import hayen.event.ColorPublisher;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.HierarchyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
-import java.util.Iterator;
-import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
  * Created by Hayen on 16-02-01.</br>
  * Color selector component, allowing the user to choose the hue and saturation on a chromatic circle and the value and alpha are selected using two slider on the side of the circle
  * @see hayen.event.ColorChangeListener
  * @see hayen.event.ColorChangeEvent
+ * @see hayen.ui.WheelImageCache#setAtlas(WheelAtlas)
  */
 public class ColorWheel extends JComponent{
 
@@ -27,25 +37,96 @@ public class ColorWheel extends JComponent{
 	private static final int shift_green = 8;
 	private static final int shift_blue = 0;
 	private static final int shift_alpha = 24;
-	private static final int NOTHING_SELECTED = 0;
-	private static final int COLOR_SELECTED = 1;
-	private static final int VALUE_SELECTED = 2;
-	private static final int ALPHA_SELECTED = 3;
-	private static final int BORDER = 4;
+	/**
+	 * Default time, in milliseconds, the size of a progressive wheel has to stay the same before it is rendered at full resolution
+	 */
+	public static final int DEFAULT_PROGRESSIVE_DELAY = 150;
+	static final int NOTHING_SELECTED = 0;
+	static final int COLOR_SELECTED = 1;
+	static final int VALUE_SELECTED = 2;
+	static final int ALPHA_SELECTED = 3;
+	static final int BORDER = 4;
+	/**
+	 * Half the size of the markers of the colors of the palette
+	 */
+	private static final int MARKER_RADIUS = 3;
 
+	private HSVAModel model;
+	/**
+	 * Color displayed by the wheel, copied from the model on the event dispatch thread
+	 */
 	private float hue, sat, b;
 	private int a;
+	/**
+	 * Color space the wheel lays out its colors in. In another space than HSB, <code>hue</code>, <code>sat</code> and <code>b</code> are the coordinates
+	 * of the color in that space, and <code>spaceState</code> is the packed color, without its alpha, they were last computed for or picked as
+	 */
+	private ColorSpace colorSpace = ColorSpace.HSB;
+	private long spaceState = -1;
+	private final float[] spaceRGB = new float[3], spaceHSV = new float[3];
+	private final HSVAListener modelListener = (m, previous, current) -> modelChanged(current);
+	private final AtomicBoolean viewUpdatePending = new AtomicBoolean();
+	private final Runnable viewUpdater = this::updateView;
 	private int cursorRadius = 5, cursorSliderRadius = 10;
 	private int wheelRadius, widthSlider = 10, borderSize = 1, radius;
 	private double theta, angleA, angleB, delta;
-	private BufferedImage wheel;
-	private Integer bufferedColor = null;
+	/**
+	 * Image of the wheel and shade mask, null when they have to be generated again
+	 */
+	private WheelImage wheel, shade;
+	/**
+	 * Device scale of the last paint
+	 */
+	private double paintScale = 1;
+	private boolean valueOverlay = false;
+	private AlphaComposite shadeComposite;
+	private boolean progressive = false;
+	private boolean fastRendering = false;
+	private boolean antialiased = false;
+	private boolean compact = false;
+	/**
+	 * Sliders of a compact wheel, drawn with Java2D
+	 */
+	private SliderRings rings;
+	/**
+	 * Why the wheel was last discarded, recorded by the <code>WheelMetrics</code> when it is generated again
+	 */
+	private WheelMetrics.Cause staleCause = WheelMetrics.Cause.INITIAL;
+	/**
+	 * Palette the colors picked with the mouse are snapped to, null if they are not
+	 */
+	private Palette palette;
+	private boolean paletteMarkers = false;
+	/**
+	 * Position of the marker of each color of the palette, relative to the center of a chromatic circle of radius <code>markerRadius</code>, and their colors
+	 */
+	private int[] markers;
+	private Color[] markerColors;
+	private int markerRadius;
+	/**
+	 * Hit-test index of the current layout, replaced by the first mouse event after the layout changes
+	 */
+	private WheelHitMap hitMap;
+	private final ProgressiveRenderer progressiveRenderer = new ProgressiveRenderer(this, DEFAULT_PROGRESSIVE_DELAY);
+	private final AcceleratedImage acceleratedWheel = new AcceleratedImage(), acceleratedShade = new AcceleratedImage();
+	private final double[] xyColor = new double[2], xyValue = new double[2], xyAlpha = new double[2], xyMarker = new double[2];
+	private final Rectangle cursorBounds = new Rectangle(), dirtyBounds = new Rectangle(), clip = new Rectangle();
+	private float paintedValue = -1;
 	private Set<ColorChangeListener> listeners;
+	private ColorChangeDispatcher dispatcher = ColorChangeDispatcher.synchronous();
+	private ColorPublisher publisher;
+	/**
+	 * Number of <code>beginUpdate</code> not yet ended, and if the color changed since the first one
+	 */
+	private volatile int updateDepth;
+	private boolean updatePending, viewDeferred;
 
 	/**
 	 * Creates a new ColorWheel
 	 */
 	public ColorWheel(){
+		model = new HSVAModel(0, 0, 1, 255);
+		model.addListener(modelListener);
 		hue = 0;
 		sat = 0;
 		b = 1;
@@ -53,7 +134,11 @@ public class ColorWheel extends JComponent{
 		MouseAdapter listener = new WheelMouseListener(this);
 		addMouseListener(listener);
 		addMouseMotionListener(listener);
-		listeners = new LinkedHashSet<ColorChangeListener>();
+		listeners = new CopyOnWriteArraySet<ColorChangeListener>();
+		addHierarchyListener(e -> {
+			if (compact && (e.getChangeFlags() & (HierarchyEvent.SHOWING_CHANGED | HierarchyEvent.DISPLAYABILITY_CHANGED)) != 0 && !isShowing())
+				dropWheel();
+		});
 		setSliderAngle(Math.toRadians(15));
 	}
 
@@ -63,10 +148,7 @@ public class ColorWheel extends JComponent{
 	 * @param value : the new value
 	 */
 	public void setValue(float value){
-		b = clamp(0, value, 1);
-		wheel = null;
-		bufferedColor = null;
-		fireColorChangeEvent();
+		model.setValue(clamp(0, value, 1));
 	}
 	/**
 	 * Set the <em>value</em> parameter of the color on the color wheel to a new value.</br>
@@ -80,45 +162,28 @@ public class ColorWheel extends JComponent{
 	 * @param alpha : the new alpha value
 	 */
 	public void setAlpha(int alpha){
-		a = clamp(0, alpha, 255);
-		bufferedColor = null;
-		fireColorChangeEvent();
+		model.setAlpha(clamp(0, alpha, 255));
 	}
 	/**
 	 * Allow to set the <em>red</em> value of the color to a new value
 	 * @param red : the new <em>red</em> value [0, 255]
 	 */
 	public void setRed(int red){
-		int rgb[] = new int[3]; HSBtoRGB(hue, sat, b, rgb);
-		rgb[0] = clamp(0, red, 255);
-		float[] hsb = Color.RGBtoHSB(rgb[0], rgb[1], rgb[2], null);
-		hue = hsb[0]; sat = hsb[1]; b = hsb[2];
-		bufferedColor = null;
-		fireColorChangeEvent();
+		changeChannel(0, red);
 	}
 	/**
 	 * Allow to set the <em>green</em> value of the color to a new value
 	 * @param green : the new <em>green</em> value [0, 255]
 	 */
 	public void setGreen(int green){
-		int rgb[] = new int[3]; HSBtoRGB(hue, sat, b, rgb);
-		rgb[1] = clamp(0, green, 255);
-		float[] hsb = Color.RGBtoHSB(rgb[0], rgb[1], rgb[2], null);
-		hue = hsb[0]; sat = hsb[1]; b = hsb[2];
-		bufferedColor = null;
-		fireColorChangeEvent();
+		changeChannel(1, green);
 	}
 	/**
 	 * Allow to set the <em>blue</em> value of the color to a new value
 	 * @param blue : the new <em>blue</em> value [0, 255]
 	 */
 	public void setBlue(int blue){
-		int rgb[] = new int[3]; HSBtoRGB(hue, sat, b, rgb);
-		rgb[2] = clamp(0, blue, 255);
-		float[] hsb = Color.RGBtoHSB(rgb[0], rgb[1], rgb[2], null);
-		hue = hsb[0]; sat = hsb[1]; b = hsb[2];
-		bufferedColor = null;
-		fireColorChangeEvent();
+		changeChannel(2, blue);
 	}
 	/**
 	 * Set the <em>hue</em> parameter of the color on the color wheel to a new value.</br>
@@ -132,9 +197,7 @@ public class ColorWheel extends JComponent{
 	 * @param h : the new hue of the color
 	 */
 	public void setHue(float h){
-		bufferedColor = null;
-		hue = clamp(0, h, 1);
-		fireColorChangeEvent();
+		model.setHue(clamp(0, h, 1));
 	}
 	/**
 	 * Set the <em>saturation</em> parameter of the color on the color wheel to a new value.</br>
@@ -143,9 +206,7 @@ public class ColorWheel extends JComponent{
 	 * @param saturation : the new saturation of the color
 	 */
 	public void setSaturation(float saturation){
-		bufferedColor = null;
-		sat = clamp(0, saturation, 1);
-		fireColorChangeEvent();
+		model.setSaturation(clamp(0, saturation, 1));
 	}
 	/**
 	 * Set the <em>saturation</em> parameter of the color on the color wheel to a new value.</br>
@@ -162,27 +223,146 @@ public class ColorWheel extends JComponent{
 	 * @param alpha : the new alpha value
 	 */
 	public void setColor(int red, int green, int blue, int alpha){
-		int rgb[] = new int[3]; HSBtoRGB(hue, sat, b, rgb);
-		rgb[0] = clamp(0, red, 255);
-		rgb[1] = clamp(0, green, 255);
-		rgb[2] = clamp(0, blue, 255);
-		a = clamp(0, alpha, 255);
-		float[] hsb = Color.RGBtoHSB(rgb[0], rgb[1], rgb[2], null);
-		hue = hsb[0]; sat = hsb[1]; b = hsb[2];
-		bufferedColor = null;
-		fireColorChangeEvent();
-	}
-	public void setColor(int red, int green, int blue) { setColor(red, green, blue, a); }
-	public void setColor(Color color){ setColor(color.getRed(), color.getGreen(), color.getBlue(), color.getAlpha()); }
+		setColorRGB((clamp(0, alpha, 255) << 24) | (clamp(0, red, 255) << 16) | (clamp(0, green, 255) << 8) | clamp(0, blue, 255));
+	}
+	public void setColor(int red, int green, int blue) {
+		long hsv = HSVAModel.packARGB((clamp(0, red, 255) << 16) | (clamp(0, green, 255) << 8) | clamp(0, blue, 255));
+		setColorHSV(hsv);
+	}
+	public void setColor(Color color){ setColorRGB(color.getRGB()); }
 	public void setColor(float hue, float saturation, float value, int alpha){
-		this.hue = clamp(0, hue, 1);
-		this.sat = clamp(0, saturation, 1);
-		this.b = clamp(0, value, 1);
-		this.a = clamp(0, alpha, 255);
-		bufferedColor = null;
-		fireColorChangeEvent();
+		model.setColor(clamp(0, hue, 1), clamp(0, saturation, 1), clamp(0, value, 1), clamp(0, alpha, 255));
+	}
+	public void setColor(float hue, float saturation, float value){
+		setColorHSV(HSVAModel.pack(clamp(0, hue, 1), clamp(0, saturation, 1), clamp(0, value, 1), 0));
+	}
+	/**
+	 * Change the color selected by the wheel, without allocating anything
+	 * @param argb : the new color in the hex ARGB format
+	 */
+	public void setColorRGB(int argb){
+		model.setARGB(argb);
+	}
+	/**
+	 * Change the color selected by the wheel, without allocating anything
+	 * @param hsva : the new color, packed by <code>HSVAModel.pack</code>
+	 * @see hayen.color.HSVAModel#pack(float, float, float, int)
+	 */
+	public void setColorHSVA(long hsva){
+		model.set(hsva);
+	}
+	/**
+	 * Change the color selected by the wheel progressively, interpolating its <em>hue</em>, <em>saturation</em>, <em>value</em> and alpha.</br>
+	 * All the wheels are animated by one shared scheduler, which changes their color, notifies their listeners and repaints them at most once per frame.
+	 * The animation replaces the running one, if any, and stops as soon as the color is changed by anything else, like the mouse
+	 * @param hue : the <em>hue</em> to reach
+	 * @param saturation : the <em>saturation</em> to reach [0, 1]
+	 * @param value : the <em>value</em> to reach [0, 1]
+	 * @param alpha : the alpha to reach [0, 255]
+	 * @param duration : the duration of the animation in milliseconds, 0 or less to change the color right away
+	 */
+	public void animateTo(float hue, float saturation, float value, int alpha, int duration){
+		animateToHSVA(HSVAModel.pack(clamp(0, hue, 1), clamp(0, saturation, 1), clamp(0, value, 1), clamp(0, alpha, 255)), duration);
+	}
+	/**
+	 * Change the color selected by the wheel progressively
+	 * @param color : the color to reach
+	 * @param duration : the duration of the animation in milliseconds, 0 or less to change the color right away
+	 * @see #animateTo(float, float, float, int, int)
+	 */
+	public void animateTo(Color color, int duration){
+		animateToHSVA(HSVAModel.packARGB(color.getRGB()), duration);
+	}
+	/**
+	 * Change the color selected by the wheel progressively
+	 * @param hsva : the color to reach, packed by <code>HSVAModel.pack</code>
+	 * @param duration : the duration of the animation in milliseconds, 0 or less to change the color right away
+	 * @see #animateTo(float, float, float, int, int)
+	 */
+	public void animateToHSVA(long hsva, int duration){
+		if (SwingUtilities.isEventDispatchThread())
+			WheelAnimator.start(this, hsva, duration);
+		else
+			SwingUtilities.invokeLater(() -> WheelAnimator.start(this, hsva, duration));
+	}
+	/**
+	 * Stop the running animation of the color, leaving the color where the animation was. Must be called on the event dispatch thread
+	 */
+	public void stopAnimation(){
+		WheelAnimator.stop(this);
+	}
+	/**
+	 * Return if the color is being animated. Must be called on the event dispatch thread
+	 * @return true if an animation is running
+	 */
+	public boolean isAnimating(){
+		return WheelAnimator.isAnimating(this);
+	}
+	/**
+	 * Change several properties of the color at once.</br>
+	 * The changes are made on an <code>Editor</code> holding a copy of the color, which replaces the color of the model in a single change: the listeners
+	 * receive a single <code>ColorChangeEvent</code> with the final color, and the wheel is repainted and recolored at most once
+	 * @param changes : makes the changes on the editor. It is called again with the new color if another thread changes the color in the meantime
+	 * @see #beginUpdate()
+	 */
+	public void update(final Consumer<Editor> changes){
+		final Editor editor = new Editor();
+		model.update(state -> {
+			editor.state = state;
+			changes.accept(editor);
+			return editor.state;
+		});
+	}
+	/**
+	 * Start a batch of changes: until the matching <code>endUpdate</code>, the changes of color are neither notified to the listeners nor shown by the
+	 * wheel, which keeps painting the color it showed when the batch started. Batches can be nested, only the outermost one notifies its changes.</br>
+	 * Unlike <code>update</code>, the model and its own listeners still see every change
+	 * @see #endUpdate()
+	 * @see #update(Consumer)
+	 */
+	public synchronized void beginUpdate(){
+		updateDepth++;
+	}
+	/**
+	 * End a batch of changes started by <code>beginUpdate</code>. If the color changed during the batch, the listeners receive a single
+	 * <code>ColorChangeEvent</code> with the final color and the wheel is repainted once
+	 * @throws IllegalStateException if no batch was started
+	 */
+	public void endUpdate(){
+		boolean pending, view;
+		synchronized (this) {
+			if (updateDepth == 0)
+				throw new IllegalStateException("endUpdate without beginUpdate");
+			if (--updateDepth > 0)
+				return;
+			pending = updatePending;
+			view = viewDeferred;
+			updatePending = viewDeferred = false;
+		}
+		if (pending)
+			notifyChange(model.get());
+		else if (view) // a change made before the batch, whose view update came during it
+			showChange();
+	}
+	/**
+	 * Change the <em>hue</em>, <em>saturation</em> and <em>value</em> of the color, keeping its alpha
+	 * @param hsv : the new packed color, whose alpha is ignored
+	 */
+	private void setColorHSV(long hsv){
+		long state;
+		do {
+			state = model.get();
+		} while (!model.compareAndSet(state, (hsv & ~0xFFL) | HSVAModel.alpha(state)));
+	}
+	/**
+	 * Replace the <em>hue</em>, <em>saturation</em> and <em>value</em> of the color by the nearest color of the palette, keeping its alpha
+	 * @param hue : the <em>hue</em> picked
+	 * @param saturation : the <em>saturation</em> picked
+	 * @param value : the <em>value</em> picked
+	 */
+	private void snapColor(float hue, float saturation, float value){
+		setColorHSV(HSVAModel.packARGB(palette.nearest(colorSpace.toRGB(hue, saturation, value))));
 	}
-	public void setColor(float hue, float saturation, float value){ setColor(hue, saturation, value, a); }
 	/**
 	 * Allow to change the angle between the vertical axis of the circle and the extremities of the <em>alpha</em> and <em>value</em> sliders.
 	 * @param theta : the new angle
@@ -192,7 +372,7 @@ public class ColorWheel extends JComponent{
 		angleA = Math.PI/2 + theta;
 		angleB = Math.PI/2 - theta;
 		delta = 2*(Math.PI - angleA);
-		wheel = null;
+		discardWheel(WheelMetrics.Cause.SLIDER_ANGLE);
 	}
 	/**
 	 * Allow to change the size (in pixel) of the border of the circle
@@ -200,7 +380,7 @@ public class ColorWheel extends JComponent{
 	 */
 	public void setBorderSize(int size){
 		updateRadius(getWidth(), widthSlider, size);
-		wheel = null;
+		discardWheel(WheelMetrics.Cause.SETTINGS);
 	}
 	/**
 	 * Allow to change the width of the <em>alpha</em> and <em>value</em> sliders
@@ -208,7 +388,134 @@ public class ColorWheel extends JComponent{
 	 */
 	public void setSliderWidth(int width){
 		widthSlider = width;
-		wheel = null;
+		discardWheel(WheelMetrics.Cause.SETTINGS);
+	}
+	/**
+	 * Allow to choose how the <em>value</em> is applied to the chromatic circle.</br>
+	 * When enabled, the circle is only rendered once at full <em>value</em> and darkened when painted by a black overlay, so that changing the <em>value</em>
+	 * costs no more than changing the <em>alpha</em>. The colors then may differ by one unit per channel from the ones of a fully rendered circle.
+	 * Only the HSB color space can darken its colors that way, the others keep rendering the <em>value</em> in the image.
+	 * @param overlay : true to apply the <em>value</em> as an overlay, false to render it in the image
+	 */
+	public void setValueOverlay(boolean overlay){
+		if (valueOverlay == overlay)
+			return;
+		valueOverlay = overlay;
+		discardWheel(WheelMetrics.Cause.SETTINGS);
+		repaint();
+	}
+	/**
+	 * Allow to change the color space the wheel lays out its colors in.</br>
+	 * The angle on the chromatic circle, the distance to its center and the <em>value</em> slider then pick the <em>hue</em>, <em>saturation</em> and
+	 * <em>value</em> of that space, and the cursors show the coordinates of the color in it. The color is still held by the model, and reported by the
+	 * getters and the listeners, in HSB and RGB
+	 * @param space : the new color space, <code>ColorSpace.HSB</code> by default
+	 * @see hayen.color.ColorSpace
+	 */
+	public void setColorSpace(ColorSpace space){
+		if (space == null)
+			throw new NullPointerException("space");
+		if (colorSpace == space)
+			return;
+		colorSpace = space;
+		spaceState = -1;
+		markers = null;
+		discardWheel(WheelMetrics.Cause.SETTINGS);
+		repaint();
+	}
+	/**
+	 * Allow to render the chromatic circle with approximate arithmetic.</br>
+	 * When enabled, the angle of the pixels is approximated by a polynomial and their color is computed in fixed-point, which makes generating the wheel
+	 * and changing its <em>value</em> much cheaper. Each channel of the colors is at most one unit away from the one of the exact rendering
+	 * @param fast : true to render the wheel with approximate arithmetic
+	 */
+	public void setFastRendering(boolean fast){
+		if (fastRendering == fast)
+			return;
+		fastRendering = fast;
+		discardWheel(WheelMetrics.Cause.SETTINGS);
+		repaint();
+	}
+	/**
+	 * Allow to smooth the edges of the chromatic circle, of the sliders and of the borders.</br>
+	 * The rendering hints of the graphics do not apply to the image of the wheel, whose pixels are each in a single zone otherwise. When enabled, the pixels
+	 * crossed by an edge are supersampled and blended from the zones they overlap, while all the others are rendered as usual, so the extra cost grows with the
+	 * perimeter of the wheel instead of its area. The zones picked with the mouse do not change
+	 * @param antialiased : true to smooth the edges of the wheel
+	 */
+	public void setAntialiased(boolean antialiased){
+		if (this.antialiased == antialiased)
+			return;
+		this.antialiased = antialiased;
+		discardWheel(WheelMetrics.Cause.SETTINGS);
+		repaint();
+	}
+	/**
+	 * Allow to keep the wheel in as little memory as possible.</br>
+	 * When enabled, only the chromatic circle is rendered in an image, a square of its diameter instead of the whole component, and the sliders are drawn with
+	 * Java2D at each paint, which makes repainting the whole wheel slower. The image is freed as soon as the component is hidden or removed, and rendered
+	 * again when it is painted next. Progressive rendering is not used by a compact wheel, whose image is cheap enough to be rendered while resizing
+	 * @param compact : true to keep the wheel compact
+	 */
+	public void setCompact(boolean compact){
+		if (this.compact == compact)
+			return;
+		this.compact = compact;
+		discardWheel(WheelMetrics.Cause.SETTINGS);
+		repaint();
+	}
+	/**
+	 * Allow to snap the colors picked with the mouse to the nearest color of a palette.</br>
+	 * The nearest color is the one that looks the closest, and it replaces the <em>hue</em>, <em>saturation</em> and <em>value</em> picked on the chromatic
+	 * circle or the <em>value</em> slider, the <em>alpha</em> staying the one of the wheel. The colors set through the setters and the model are not snapped
+	 * @param palette : the palette, null to stop snapping
+	 * @see #setPaletteMarkers(boolean)
+	 */
+	public void setPalette(Palette palette){
+		if (this.palette == palette)
+			return;
+		this.palette = palette;
+		markers = null;
+		markerColors = null;
+		if (paletteMarkers)
+			repaint();
+	}
+	/**
+	 * Allow to show where the colors of the palette are on the chromatic circle, by a small square of their color at their <em>hue</em> and
+	 * <em>saturation</em>
+	 * @param show : true to show the colors of the palette
+	 * @see #setPalette(Palette)
+	 */
+	public void setPaletteMarkers(boolean show){
+		if (paletteMarkers == show)
+			return;
+		paletteMarkers = show;
+		if (palette != null)
+			repaint();
+	}
+	/**
+	 * Allow to render the wheel progressively when the component is resized.</br>
+	 * When enabled, a new size is first shown by scaling the previous wheel, then a quarter resolution wheel, and the full resolution wheel is only rendered
+	 * once the size stopped changing. All of it is rendered off the event dispatch thread, so that resizing never blocks the user interface
+	 * @param progressive : true to render the wheel progressively
+	 * @see #setProgressiveDelay(int)
+	 */
+	public void setProgressiveRendering(boolean progressive){
+		if (this.progressive == progressive)
+			return;
+		this.progressive = progressive;
+		if (!progressive && progressiveRenderer.isPending()) {
+			progressiveRenderer.cancel();
+			discardWheel(WheelMetrics.Cause.RESIZE);
+			repaint();
+		}
+	}
+	/**
+	 * Allow to change the time the size of the component has to stay the same before a progressive wheel is rendered at full resolution
+	 * @param delay : the delay, in milliseconds
+	 */
+	public void setProgressiveDelay(int delay){
+		progressiveRenderer.setDelay(Math.max(0, delay));
 	}
 
 	/**
@@ -216,16 +523,35 @@ public class ColorWheel extends JComponent{
 	 * @return a float array containing the hue, saturation and value
 	 */
 	public float[] getColorHSV(){
-		return new float[]{hue, sat, b};
+		return getColorHSV(new float[3]);
+	}
+	/**
+	 * Write the color identified by the wheel in the HSB format in an array, so that reading it allocates nothing
+	 * @param hsv : the array receiving the hue, saturation and value, at least 3 long
+	 * @return <code>hsv</code>
+	 */
+	public float[] getColorHSV(float[] hsv){
+		long state = model.get();
+		hsv[0] = HSVAModel.hue(state);
+		hsv[1] = HSVAModel.saturation(state);
+		hsv[2] = HSVAModel.value(state);
+		return hsv;
+	}
+	/**
+	 * Return the color identified by the wheel, packed as by <code>HSVAModel.pack</code>.</br>
+	 * All the parameters are read at once, so they always belong to the same color
+	 * @return the packed color
+	 * @see hayen.color.HSVAModel
+	 */
+	public long getColorHSVA(){
+		return model.get();
 	}
 	/**
 	 * Return a <code>Java.awt.Color</code> object representing the color selected on this <code>ColorWheel</code>
 	 * @return the color Selected on this <code>ColorWheel</code>
 	 */
 	public Color getColor(){
-		if (bufferedColor == null)
-			bufferedColor = generateBufferedColor(hue, sat, b, a);
-		return new Color(bufferedColor, true);
+		return new Color(model.getARGB(), true);
 	}
 	/**
 	 * Return the selected color in the hex RGB format.</br>
@@ -233,45 +559,56 @@ public class ColorWheel extends JComponent{
 	 * @return the selected color in the hex format
 	 */
 	public int getColorRGB(){
-		if (bufferedColor == null)
-			bufferedColor = generateBufferedColor(hue, sat, b, a);
-		return bufferedColor;
+		return model.getARGB();
+	}
+	/**
+	 * Write the red, green, blue and alpha values of the selected color in an array, so that reading them allocates nothing
+	 * @param rgba : the array receiving the channels ([0, 255]), at least 4 long
+	 * @return <code>rgba</code>
+	 */
+	public int[] getColorRGB(int[] rgba){
+		int argb = getColorRGB();
+		rgba[0] = (argb & mask[0]) >>> shift_red;
+		rgba[1] = (argb & mask[1]) >>> shift_green;
+		rgba[2] = (argb & mask[2]) >>> shift_blue;
+		rgba[3] = (argb & mask[3]) >>> shift_alpha;
+		return rgba;
 	}
 	/**
 	 * Return the red value of the selected color
 	 * @return the red value ([0, 255])
 	 */
-	public int getRed(){ return (bufferedColor & mask[0]) >>> shift_red; }
+	public int getRed(){ return (getColorRGB() & mask[0]) >>> shift_red; }
 	/**
 	 * Return the green value of the selected color
 	 * @return the green value ([0, 255])
 	 */
-	public int getGreen(){ return (bufferedColor & mask[1]) >>> shift_green; }
+	public int getGreen(){ return (getColorRGB() & mask[1]) >>> shift_green; }
 	/**
 	 * Return the blue value of the selected color
 	 * @return the blue value ([0, 255])
 	 */
-	public int getBlue(){ return (bufferedColor & mask[2]) >>> shift_blue; }
+	public int getBlue(){ return (getColorRGB() & mask[2]) >>> shift_blue; }
 	/**
 	 * Return the alpha value of the selected color
 	 * @return the alpha value ([0, 255])
 	 */
-	public int getAlpha(){ return (bufferedColor & mask[3]) >>> shift_alpha; }
+	public int getAlpha(){ return (getColorRGB() & mask[3]) >>> shift_alpha; }
 	/**
 	 * Return the <em>hue</em> of the selected color
 	 * @return the <em>hue</em> ([0, 1])
 	 */
-	public double getHue(){ return hue; }
+	public double getHue(){ return model.getHue(); }
 	/**
 	 * Return the <em>saturation</em> of the selected color
 	 * @return the <em>saturation</em> ([0, 1])
 	 */
-	public double getSaturation(){ return sat; }
+	public double getSaturation(){ return model.getSaturation(); }
 	/**
 	 * Return the <em>value</em> of the selected color
 	 * @return the <em>value</em> ([0, 1])
 	 */
-	public double getValue(){ return b; }
+	public double getValue(){ return model.getValue(); }
 	/**
 	 * Return the interior angle formed by the vertical axis of the circle and the extremities of the <em>alpha</em> and the <em>value</em> sliders.
 	 * @return The interior angle formed by the vertical axis and the sliders
@@ -282,23 +619,127 @@ public class ColorWheel extends JComponent{
 	 * @return the size of the border of the wheel
 	 */
 	public double getBorderSize(){ return borderSize; }
+	/**
+	 * Return the model holding the color selected on this <code>ColorWheel</code>
+	 * @return the model of the color
+	 */
+	public HSVAModel getModel(){ return model; }
+	/**
+	 * Replace the model holding the color selected on this <code>ColorWheel</code>.</br>
+	 * The model can be shared with other wheels and changed from any thread, the wheel is updated on the event dispatch thread
+	 * @param model : the new model
+	 */
+	public void setModel(HSVAModel model){
+		if (model == null)
+			throw new NullPointerException("model");
+		if (this.model == model)
+			return;
+		this.model.removeListener(modelListener);
+		this.model = model;
+		model.addListener(modelListener);
+		modelChanged(model.get());
+	}
+	/**
+	 * Return if the <em>value</em> is applied as an overlay over a chromatic circle rendered at full <em>value</em>
+	 * @return true if the <em>value</em> is applied as an overlay
+	 * @see #setValueOverlay(boolean)
+	 */
+	public boolean isValueOverlay(){ return valueOverlay; }
+	/**
+	 * Return the color space the wheel lays out its colors in
+	 * @return the color space
+	 * @see #setColorSpace(ColorSpace)
+	 */
+	public ColorSpace getColorSpace(){ return colorSpace; }
+	/**
+	 * Return if the chromatic circle is rendered with approximate arithmetic
+	 * @return true if the wheel is rendered with approximate arithmetic
+	 * @see #setFastRendering(boolean)
+	 */
+	public boolean isFastRendering(){ return fastRendering; }
+	/**
+	 * Return if the edges of the wheel are smoothed
+	 * @return true if the edges are antialiased
+	 * @see #setAntialiased(boolean)
+	 */
+	public boolean isAntialiased(){ return antialiased; }
+	/**
+	 * Return the palette the colors picked with the mouse are snapped to
+	 * @return the palette, null if the colors are not snapped
+	 * @see #setPalette(Palette)
+	 */
+	public Palette getPalette(){ return palette; }
+	/**
+	 * Return if the colors of the palette are shown on the chromatic circle
+	 * @return true if the colors of the palette are shown
+	 * @see #setPaletteMarkers(boolean)
+	 */
+	public boolean isPaletteMarkers(){ return paletteMarkers; }
+	/**
+	 * Return if the wheel is rendered progressively when the component is resized
+	 * @return true if the wheel is rendered progressively
+	 * @see #setProgressiveRendering(boolean)
+	 */
+	public boolean isProgressiveRendering(){ return progressive; }
+	/**
+	 * Return if the wheel is kept compact
+	 * @return true if only the chromatic circle is kept in an image
+	 */
+	public boolean isCompact(){ return compact; }
+	/**
+	 * Return the time, in milliseconds, the size of the component has to stay the same before a progressive wheel is rendered at full resolution
+	 * @return the delay, in milliseconds
+	 */
+	public int getProgressiveDelay(){ return progressiveRenderer.getDelay(); }
 
 	@Override
 	public void paint(Graphics g){
+		long start = WheelMetrics.start();
 		Graphics2D g2 = (Graphics2D)g;
 		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		if (updateDepth == 0) // the changes of an update are only shown when it ends
+			syncView();
+		paintScale = WheelImage.deviceScale(g2.getTransform());
 
 		if (wheel == null) {
 			updateRadius(Math.min(getWidth(), getHeight()), widthSlider, borderSize);
-			wheel = generateWheel();
+			generateWheel();
+		}
+		else if (progressiveRenderer.isPending()) {
+			paintScaledWheel(g2);
+		}
+		else if (!shaded() && wheel.getValue() != b) {
+			recolorWheel();
 		}
 
-		g2.drawImage(wheel, null, this);
+		if (!progressiveRenderer.isPending()) {
+			clip.setBounds(0, 0, getWidth(), getHeight()); // kept as is if there is no clip
+			Rectangle area = g2.getClipBounds(clip);
+			int offset = compact ? radius - wheel.getWidth(null)/2 : 0; // the image of a compact wheel only covers the chromatic circle
+			g2.translate(offset, offset);
+			area.translate(-offset, -offset);
+			acceleratedWheel.draw(g2, area);
+			if (shaded() && b < 1) {
+				Composite composite = applyShade(g2);
+				acceleratedShade.draw(g2, area);
+				g2.setComposite(composite);
+			}
+			g2.translate(-offset, -offset);
+			area.translate(offset, offset);
+			wheel.retainOnly(paintScale);
+			if (shade != null)
+				shade.retainOnly(paintScale);
+			if (compact) {
+				if (rings == null || !rings.matches(radius, wheelRadius, widthSlider, angleA, angleB))
+					rings = new SliderRings(radius, wheelRadius, widthSlider, angleA, angleB, delta);
+				rings.paint(g2, area);
+			}
+		}
+		if (paletteMarkers && palette != null)
+			paintMarkers(g2);
 
-		int sliderRad = wheelRadius + borderSize + widthSlider/2;
-		double[] xyColor = getCoordinate(hue, sat, wheelRadius);
-		double[] xyValue = getCoordinate(computeAngleFromAlpha(b, delta), sliderRad); xyValue[0] *= -1;
-		double[] xyAlpha = getCoordinate(computeAngleFromAlpha(a/255d, delta), sliderRad);
+		updateCursors(cursorBounds);
+		paintedValue = b;
 
 		g2.setColor(Color.lightGray);
 		g2.fillOval((int)((xyAlpha[0] + radius ) - cursorSliderRadius), (int)((xyAlpha[1] + radius ) - cursorSliderRadius), cursorSliderRadius*2, cursorSliderRadius*2);
@@ -310,45 +751,301 @@ public class ColorWheel extends JComponent{
 		g2.drawOval((int)((xyAlpha[0] + radius ) - cursorSliderRadius), (int)((xyAlpha[1] + radius ) - cursorSliderRadius), cursorSliderRadius*2, cursorSliderRadius*2);
 		g2.drawOval((int)((xyValue[0] + radius ) - cursorSliderRadius), (int)((xyValue[1] + radius ) - cursorSliderRadius), cursorSliderRadius*2, cursorSliderRadius*2);
 		g2.drawOval((int)((xyColor[0] + radius ) - cursorRadius), (int)((xyColor[1] + radius ) - cursorRadius), cursorRadius*2, cursorRadius*2);
+		WheelMetrics.painted(start);
+	}
+	/**
+	 * Compute the position of the three cursors from the selected color
+	 * @param bounds : receives the bounding box of the three cursors
+	 */
+	private void updateCursors(Rectangle bounds){
+		int sliderRad = wheelRadius + borderSize + widthSlider/2;
+		getCoordinate(hue, sat, wheelRadius, xyColor);
+		getCoordinate(computeAngleFromAlpha(b, delta), sliderRad, xyValue); xyValue[0] *= -1;
+		getCoordinate(computeAngleFromAlpha(a/255d, delta), sliderRad, xyAlpha);
+
+		// one more pixel on each side for the stroke of the ovals
+		int x = (int)((xyColor[0] + radius ) - cursorRadius) - 1, y = (int)((xyColor[1] + radius ) - cursorRadius) - 1;
+		bounds.setBounds(x, y, cursorRadius*2 + 3, cursorRadius*2 + 3);
+		x = (int)((xyValue[0] + radius ) - cursorSliderRadius) - 1; y = (int)((xyValue[1] + radius ) - cursorSliderRadius) - 1;
+		bounds.add(x, y);
+		bounds.add(x + cursorSliderRadius*2 + 3, y + cursorSliderRadius*2 + 3);
+		x = (int)((xyAlpha[0] + radius ) - cursorSliderRadius) - 1; y = (int)((xyAlpha[1] + radius ) - cursorSliderRadius) - 1;
+		bounds.add(x, y);
+		bounds.add(x + cursorSliderRadius*2 + 3, y + cursorSliderRadius*2 + 3);
+	}
+	/**
+	 * Repaint the part of the component covered by the cursors, before and after the last change of color.</br>
+	 * The whole component is repainted if the <em>value</em> changed, since the chromatic circle changes with it
+	 */
+	private void repaintCursors(){
+		if (b != paintedValue) {
+			repaint();
+			return;
+		}
+		dirtyBounds.setBounds(cursorBounds);
+		updateCursors(cursorBounds);
+		dirtyBounds.add(cursorBounds.x, cursorBounds.y);
+		dirtyBounds.add(cursorBounds.x + cursorBounds.width, cursorBounds.y + cursorBounds.height);
+		repaint(dirtyBounds.x, dirtyBounds.y, dirtyBounds.width, dirtyBounds.height);
 	}
+	/**
+	 * Paint the wheel while a progressive render is pending: the preview if it is ready, the previous wheel scaled to the new size otherwise
+	 * @param g2 : the graphics to paint with
+	 */
+	private void paintScaledWheel(Graphics2D g2){
+		int width = Math.min(getWidth(), getHeight());
+		Object interpolation = g2.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+		g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		BufferedImage preview = progressiveRenderer.preview;
+		if (preview != null)
+			g2.drawImage(preview, 0, 0, width, width, null);
+		else {
+			g2.drawImage(wheel.getVariant(paintScale), 0, 0, width, width, null);
+			if (shaded() && b < 1) {
+				Composite composite = applyShade(g2);
+				g2.drawImage(shade.getVariant(paintScale), 0, 0, width, width, null);
+				g2.setComposite(composite);
+			}
+		}
+		if (interpolation != null)
+			g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+	}
+	/**
+	 * Return if the <em>value</em> is applied as an overlay, which only gives the colors of the HSB color space
+	 */
+	private boolean shaded(){ return valueOverlay && colorSpace == ColorSpace.HSB; }
+	/**
+	 * Paint the markers of the colors of the palette that are in the clip
+	 * @param g2 : the graphics to paint with
+	 */
+	private void paintMarkers(Graphics2D g2){
+		if (markers == null || markerRadius != wheelRadius) {
+			int n = palette.size();
+			markers = new int[2*n];
+			if (markerColors == null)
+				markerColors = new Color[n];
+			for (int i = 0; i < n; i++) {
+				int argb = palette.getColor(i);
+				colorSpace.fromRGB(((argb >>> 16) & 0xFF)/255f, ((argb >>> 8) & 0xFF)/255f, (argb & 0xFF)/255f, spaceHSV);
+				getCoordinate(spaceHSV[0], spaceHSV[1], wheelRadius, xyMarker);
+				markers[2*i] = (int)Math.round(xyMarker[0]);
+				markers[2*i + 1] = (int)Math.round(xyMarker[1]);
+				if (markerColors[i] == null)
+					markerColors[i] = new Color(argb | 0xFF000000);
+			}
+			markerRadius = wheelRadius;
+		}
+		clip.setBounds(0, 0, getWidth(), getHeight());
+		Rectangle area = g2.getClipBounds(clip);
+		int size = 2*MARKER_RADIUS;
+		for (int i = 0; i < markerColors.length; i++) {
+			int x = markers[2*i] + radius - MARKER_RADIUS, y = markers[2*i + 1] + radius - MARKER_RADIUS;
+			if (x + size < area.x || y + size < area.y || x > area.x + area.width || y > area.y + area.height)
+				continue;
+			g2.setColor(Color.gray);
+			g2.fillRect(x, y, size, size);
+			g2.setColor(markerColors[i]);
+			g2.fillRect(x + 1, y + 1, size - 2, size - 2);
+		}
+	}
+	/**
+	 * Set the composite with which the shade mask darkens the chromatic circle according to the <em>value</em>, when it is applied as an overlay
+	 * @param g2 : the graphics to paint with
+	 * @return the previous composite of the graphics
+	 */
+	private Composite applyShade(Graphics2D g2){
+		if (shadeComposite == null || shadeComposite.getAlpha() != 1 - b)
+			shadeComposite = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1 - b);
+		Composite composite = g2.getComposite();
+		g2.setComposite(shadeComposite);
+		return composite;
+	}
+
 	@Override
 	public void setSize(Dimension s){
 		int diam = (int)Math.min(s.getHeight(), s.getWidth());
 		updateRadius(diam, widthSlider, borderSize);
 		super.setSize(s);
-		wheel = null;
+		discardWheel(WheelMetrics.Cause.RESIZE);
 	}
 	@Override
 	public void setSize(int w, int h){
 		int diam = Math.min(w, h);
 		updateRadius(diam, widthSlider, borderSize);
 		super.setSize(w, h);
-		wheel = generateWheel();
+		resizeWheel();
 	}
 	@Override
 	public void setBounds(Rectangle r){
 		int diam = (int)Math.min(r.getHeight(), r.getWidth());
 		updateRadius(diam, widthSlider, borderSize);
 		super.setBounds(r);
-		wheel = generateWheel();
+		resizeWheel();
 	}
 	@Override
 	public void setBounds(int x, int y, int w, int h){
 		int diam = Math.min(w, h);
 		updateRadius(diam, widthSlider, borderSize);
 		super.setBounds(x, y, w, h);
-		wheel = generateWheel();
+		resizeWheel();
+	}
+
+	/**
+	 * Update the wheel after the component was resized, either right away or progressively
+	 */
+	private void resizeWheel(){
+		if (!progressive || compact || wheel == null || !SwingUtilities.isEventDispatchThread()) {
+			discardWheel(WheelMetrics.Cause.RESIZE);
+			generateWheel();
+			return;
+		}
+		int width = Math.min(getWidth(), getHeight());
+		if (wheel.matches(width, wheelRadius, widthSlider, angleA, angleB, fastRendering, antialiased)) {
+			if (progressiveRenderer.isPending()) {
+				progressiveRenderer.cancel();
+				repaint();
+			}
+			return;
+		}
+		progressiveRenderer.resize(new WheelImageCache.Key(WheelImageCache.GEOMETRY, width, wheelRadius, widthSlider, angleA, angleB, 0, fastRendering, antialiased,
+				colorSpace), b,
+				shaded(), paintScale);
+	}
+
+	@Override
+	public void removeNotify(){
+		super.removeNotify();
+		WheelAnimator.stop(this);
+		if (progressiveRenderer.isPending())
+			progressiveRenderer.cancel();
+		releaseWheel();
+	}
+
+	/**
+	 * Called every time the color of the model changes, on the thread that changed it.</br>
+	 * The listeners are notified right away, while the wheel itself is only updated on the event dispatch thread
+	 * @param state : the new packed color
+	 */
+	private void modelChanged(long state){
+		if (updateDepth != 0 && deferChange())
+			return;
+		notifyChange(state);
+	}
+	private void notifyChange(long state){
+		fireColorChangeEvent(HSVAModel.argb(state));
+		showChange();
+	}
+	private void showChange(){
+		if (SwingUtilities.isEventDispatchThread())
+			updateView();
+		else if (viewUpdatePending.compareAndSet(false, true))
+			SwingUtilities.invokeLater(viewUpdater);
+	}
+	/**
+	 * Record a change of color made during an update, to be notified when it ends
+	 * @return false if the update already ended
+	 */
+	private synchronized boolean deferChange(){
+		if (updateDepth == 0)
+			return false;
+		updatePending = true;
+		return true;
+	}
+	/**
+	 * Record a view update asked during an update, to be made when it ends
+	 * @return false if the update already ended
+	 */
+	private synchronized boolean deferView(){
+		if (updateDepth == 0)
+			return false;
+		viewDeferred = true;
+		return true;
+	}
+	/**
+	 * Copy the color of the model to the one displayed, and repaint what changed
+	 */
+	private void updateView(){
+		viewUpdatePending.set(false);
+		if (updateDepth != 0 && deferView())
+			return;
+		syncView();
+		repaintCursors();
+	}
+	/**
+	 * Copy the color of the model to the one displayed, from a single read of the model
+	 */
+	private void syncView(){
+		long state = model.get();
+		a = HSVAModel.alpha(state);
+		if (colorSpace == ColorSpace.HSB) {
+			hue = HSVAModel.hue(state);
+			sat = HSVAModel.saturation(state);
+			b = HSVAModel.value(state);
+		}
+		else if ((state & ~0xFFL) != spaceState) {
+			ColorSpace.HSB.toRGB(HSVAModel.hue(state), HSVAModel.saturation(state), HSVAModel.value(state), spaceRGB);
+			colorSpace.fromRGB(spaceRGB[0], spaceRGB[1], spaceRGB[2], spaceHSV);
+			hue = spaceHSV[0];
+			sat = spaceHSV[1];
+			b = spaceHSV[2];
+			spaceState = state & ~0xFFL;
+		}
+	}
+	/**
+	 * Select a color given by its coordinates in the color space of the wheel, keeping its alpha
+	 * @param hue : the <em>hue</em> picked
+	 * @param saturation : the <em>saturation</em> picked
+	 * @param value : the <em>value</em> picked
+	 */
+	private void pickColor(float hue, float saturation, float value){
+		colorSpace.toRGB(hue, saturation, value, spaceRGB);
+		ColorSpace.HSB.fromRGB(spaceRGB[0], spaceRGB[1], spaceRGB[2], spaceHSV);
+		long hsv = HSVAModel.pack(spaceHSV[0], spaceHSV[1], spaceHSV[2], 0);
+		// the coordinates picked are kept as long as the model holds the color they gave, so that they survive black, white and the grays
+		this.hue = hue - (float)Math.floor(hue);
+		this.sat = saturation;
+		this.b = value;
+		spaceState = hsv;
+		setColorHSV(hsv);
 	}
 
 	/**
 	 * Send a <code>ColorChangeEvent</code> to all registered listeners.</br>
 	 * A <code>ColorChangeEvent</code> is fired when the color selected on this <code>ColorWheel</code> changes
+	 * @param argb : the new color, in the hex ARGB format
+	 */
+	private void fireColorChangeEvent(int argb){
+		WheelMetrics.colorChanged();
+		dispatcher.dispatch(this, argb, listeners);
+		if (publisher != null && publisher.hasSubscribers())
+			publisher.publish(argb);
+	}
+	/**
+	 * Choose when and on which thread the <code>ColorChangeEvent</code>s are delivered to the listeners.</br>
+	 * By default, every change is delivered right away on the thread that made it
+	 * @param dispatcher : the dispatcher to use, not shared with another <code>ColorWheel</code>
+	 * @see hayen.event.ColorChangeDispatcher
+	 */
+	public void setColorChangeDispatcher(ColorChangeDispatcher dispatcher){
+		if (dispatcher == null)
+			throw new NullPointerException("dispatcher");
+		this.dispatcher = dispatcher;
+	}
+	/**
+	 * Return the dispatcher delivering the <code>ColorChangeEvent</code>s to the listeners
+	 * @return the dispatcher
 	 */
-	private void fireColorChangeEvent(){
-		ColorChangeEvent e = new ColorChangeEvent(this, getColor());
-		Iterator<ColorChangeListener> it = listeners.iterator();
-		while(it.hasNext())
-			it.next().colorChanged(e);
+	public ColorChangeDispatcher getColorChangeDispatcher(){ return dispatcher; }
+	/**
+	 * Return a <code>Flow.Publisher</code> of the colors selected on this <code>ColorWheel</code>.</br>
+	 * Its subscribers only receive the colors they request, and always receive the latest one
+	 * @return the publisher of the selected colors
+	 * @see hayen.event.ColorPublisher
+	 */
+	public synchronized Flow.Publisher<Color> getColorPublisher(){
+		if (publisher == null)
+			publisher = new ColorPublisher();
+		return publisher;
 	}
 	/**
 	 * Register a <code>ColorChangeListener</code> to this <code>ColorWheel</code></br>
@@ -367,69 +1064,118 @@ public class ColorWheel extends JComponent{
 	}
 
 	/**
-	 * Compute the color in the rgb hex format
-	 * @param hue : the <em>hue</em> of the color
-	 * @param sat : the <em>saturation</em> of the color
-	 * @param val : the <em>value</em> of the color
-	 * @param a : the transparency of the color
-	 * @return the color int the rgb hex format
-	 */
-	private static int generateBufferedColor(double hue, double sat, double val, int a){
-		int rgb = Color.HSBtoRGB((float)hue, (float)sat, (float)val) & ~mask[3];
-		return (a << shift_alpha) + rgb;
-	}
-	/**
-	 * Generate the <code>BufferedImage</code> representing the wheel
-	 * @return the wheel!
-	 */
-	private BufferedImage generateWheel(){
-			if (wheel != null)
-				wheel.flush();
-
-			int width = Math.min(getWidth(), getHeight());
-			int Radius = width/2;
-			wheel = new BufferedImage(width, width, BufferedImage.TYPE_INT_ARGB);
-
-			int[] selections = {0, 0, 0, 0, 0};
-
-			int x, y, nx, ny;
-			int sqrMagnitude;
-			double magnitude, alpha;
-			for (x = 0; x < width; x++) {
-				for (y = 0; y < width; y++) {
-					nx = x - Radius;
-					ny = Radius - y;
-					sqrMagnitude = nx*nx + ny*ny;
-					magnitude = Math.sqrt(sqrMagnitude);
-					alpha = Math.atan2(ny, nx);
-
-					int sel = getSelection(sqrMagnitude, wheelRadius, widthSlider, 1, angleA, angleB, alpha);
-					selections[sel]++;
-
-					switch (sel){
-						case COLOR_SELECTED: // color
-							double hue = alpha / Math.PI / 2;
-							double saturation = magnitude / wheelRadius;
-							wheel.setRGB(x, y, Color.HSBtoRGB((float) hue, (float) saturation, b));
-							break;
-						case VALUE_SELECTED: // brightness
-							int n = (int)(255*computeValue(alpha, angleA, delta))%255;
-							wheel.setRGB(x, y, new Color(n, n, n).getRGB());
-							break;
-						case ALPHA_SELECTED: // alpha
-							wheel.setRGB(x, y, new Color(0, 0, 0, (int) (computeAlpha(alpha, angleB, delta) * 255)).getRGB());
-							break;
-						case BORDER: // border of the wheel
-							wheel.setRGB(x, y, 0xFF303030);
-							break;
-						default: // nothing
-							wheel.setRGB(x, y, 0x00000000);
-							break;
-					}
-				}
-			}
+	 * Change one of the red, green or blue channel of the selected color, keeping the other ones
+	 * @param channel : the channel to change (0 for red, 1 for green and 2 for blue)
+	 * @param level : the new level of the channel [0, 255]
+	 */
+	private void changeChannel(int channel, int level){
+		long state;
+		do {
+			state = model.get();
+		} while (!model.compareAndSet(state, withChannel(state, channel, level)));
+	}
+	/**
+	 * Return a packed color with one of its RGB channels changed, keeping its alpha
+	 * @param state : the packed color
+	 * @param channel : the channel (0: <em>red</em>, 1: <em>green</em>, 2: <em>blue</em>)
+	 * @param level : the new level of the channel [0, 255]
+	 * @return the new packed color
+	 */
+	private static long withChannel(long state, int channel, int level){
+		int shift = 16 - 8*channel;
+		int bits = clamp(0, level, 255) << shift;
+		int rgb = HSBtoRGB(HSVAModel.hue(state), HSVAModel.saturation(state), HSVAModel.value(state), null);
+		return (HSVAModel.packARGB((rgb & ~(0xFF << shift)) | bits) & ~0xFFL) | HSVAModel.alpha(state);
+	}
+	/**
+	 * Generate the <code>WheelImage</code> representing the wheel, rendering it at the device scale of the last paint.</br>
+	 * The geometry and the images are taken from the <code>WheelImageCache</code>, so they are shared with the other wheels of the same layout. The geometry
+	 * is only needed to render the images, so it is not even built when they are already cached or in the atlas. The variants of the other scales are only
+	 * rendered if the wheel is painted at them
+	 */
+	private void generateWheel(){
+		long start = WheelMetrics.start();
+		WheelMetrics.Cause cause = staleCause;
+		if (progressiveRenderer.isPending())
+			progressiveRenderer.cancel();
 
-		return wheel;
+		WheelImageCache.Key key = wheelLayout();
+		boolean shaded = shaded();
+		installWheel(new WheelImage(key, WheelImageCache.WHEEL, shaded ? 1 : b), shaded ? new WheelImage(key, WheelImageCache.SHADE, 0) : null);
+		wheel.getVariant(paintScale);
+		if (shade != null)
+			shade.getVariant(paintScale);
+		WheelMetrics.regenerated(cause, start);
+	}
+	/**
+	 * Return the geometry key of the image of the wheel: the whole component, or only the chromatic circle and its border for a compact wheel
+	 */
+	private WheelImageCache.Key wheelLayout(){
+		if (compact)
+			return new WheelImageCache.Key(WheelImageCache.GEOMETRY, Math.max(1, 2*wheelRadius + 3), wheelRadius, 0, angleA, angleB, 0, fastRendering, antialiased,
+					colorSpace);
+		return new WheelImageCache.Key(WheelImageCache.GEOMETRY, Math.min(getWidth(), getHeight()), wheelRadius, widthSlider, angleA, angleB, 0, fastRendering,
+				antialiased, colorSpace);
+	}
+	/**
+	 * Change the image of the wheel to the selected <em>value</em>, taking it from the cache or the atlas if it is there, recoloring it otherwise.</br>
+	 * Only the variant of the device scale of the last paint is updated right away, the others are when they are painted
+	 */
+	private void recolorWheel(){
+		long start = WheelMetrics.start();
+		wheel.setValue(b);
+		wheel.getVariant(paintScale);
+		acceleratedWheel.invalidate();
+		WheelMetrics.regenerated(WheelMetrics.Cause.VALUE, start);
+	}
+	/**
+	 * Replace the images used by this wheel, giving back the previous ones to the <code>WheelImageCache</code>
+	 * @param wheel : the image of the wheel
+	 * @param shade : the shade mask of the wheel, null if the <em>value</em> is not applied as an overlay
+	 */
+	void installWheel(WheelImage wheel, WheelImage shade){
+		releaseImages();
+		this.wheel = wheel;
+		this.shade = shade;
+		acceleratedWheel.setSource(wheel);
+		acceleratedShade.setSource(shade);
+	}
+	/**
+	 * Give back the images of the wheel so that it is generated again on the next paint
+	 * @param cause : why the wheel has to be generated again, kept for the <code>WheelMetrics</code> unless there is no wheel yet
+	 */
+	private void discardWheel(WheelMetrics.Cause cause){
+		if (wheel != null)
+			staleCause = cause;
+		releaseImages();
+	}
+	/**
+	 * Give back to the <code>WheelImageCache</code> the images and geometries used by this wheel, so that they can be evicted.</br>
+	 * They are taken back the next time the wheel is painted
+	 */
+	private void releaseWheel(){
+		releaseImages();
+		staleCause = WheelMetrics.Cause.INITIAL;
+	}
+	/**
+	 * Free the images of a compact wheel that is no longer shown, removing them from the <code>WheelImageCache</code> unless another wheel uses them
+	 */
+	private void dropWheel(){
+		if (wheel != null)
+			wheel.drop();
+		if (shade != null)
+			shade.drop();
+		releaseWheel();
+		rings = null;
+	}
+	private void releaseImages(){
+		if (wheel != null)
+			wheel.release();
+		if (shade != null)
+			shade.release();
+		wheel = shade = null;
+		acceleratedWheel.flush();
+		acceleratedShade.flush();
 	}
 
 	/**
@@ -445,6 +1191,209 @@ public class ColorWheel extends JComponent{
 		wheelRadius = width/2 - slider - border*2;
 	}
 
+	/**
+	 * Return the hit-test index of the current layout, replacing it if the layout changed since it was made
+	 */
+	private WheelHitMap hitMap(){
+		int diameter = Math.min(getWidth(), getHeight());
+		WheelHitMap map = hitMap;
+		if (map == null || !map.matches(diameter, radius, wheelRadius, widthSlider, borderSize, angleA, angleB))
+			hitMap = map = new WheelHitMap(diameter, radius, wheelRadius, widthSlider, borderSize, angleA, angleB);
+		return map;
+	}
+	/**
+	 * Copy of the color of a wheel changed by <code>ColorWheel.update</code>, with the same setters as the wheel
+	 * @see ColorWheel#update(Consumer)
+	 */
+	public static final class Editor {
+
+		private long state;
+
+		private Editor(){}
+
+		/**
+		 * Set the <em>hue</em> of the color
+		 * @param hue : the new <em>hue</em> [0, 1]
+		 * @return this editor
+		 */
+		public Editor setHue(float hue){
+			state = HSVAModel.pack(clamp(0, hue, 1), HSVAModel.saturation(state), HSVAModel.value(state), HSVAModel.alpha(state));
+			return this;
+		}
+		/**
+		 * Set the <em>hue</em> of the color
+		 * @param hue : the new <em>hue</em> [0, 1]
+		 * @return this editor
+		 */
+		public Editor setHue(double hue){ return setHue((float)hue); }
+		/**
+		 * Set the <em>saturation</em> of the color
+		 * @param saturation : the new <em>saturation</em> [0, 1]
+		 * @return this editor
+		 */
+		public Editor setSaturation(float saturation){
+			state = HSVAModel.pack(HSVAModel.hue(state), clamp(0, saturation, 1), HSVAModel.value(state), HSVAModel.alpha(state));
+			return this;
+		}
+		/**
+		 * Set the <em>saturation</em> of the color
+		 * @param saturation : the new <em>saturation</em> [0, 1]
+		 * @return this editor
+		 */
+		public Editor setSaturation(double saturation){ return setSaturation((float)saturation); }
+		/**
+		 * Set the <em>value</em> of the color
+		 * @param value : the new <em>value</em> [0, 1]
+		 * @return this editor
+		 */
+		public Editor setValue(float value){
+			state = HSVAModel.pack(HSVAModel.hue(state), HSVAModel.saturation(state), clamp(0, value, 1), HSVAModel.alpha(state));
+			return this;
+		}
+		/**
+		 * Set the <em>value</em> of the color
+		 * @param value : the new <em>value</em> [0, 1]
+		 * @return this editor
+		 */
+		public Editor setValue(double value){ return setValue((float)value); }
+		/**
+		 * Set the alpha of the color
+		 * @param alpha : the new alpha [0, 255]
+		 * @return this editor
+		 */
+		public Editor setAlpha(int alpha){
+			state = (state & ~0xFFL) | clamp(0, alpha, 255);
+			return this;
+		}
+		/**
+		 * Set the <em>red</em> value of the color, keeping its alpha
+		 * @param red : the new <em>red</em> value [0, 255]
+		 * @return this editor
+		 */
+		public Editor setRed(int red){
+			state = withChannel(state, 0, red);
+			return this;
+		}
+		/**
+		 * Set the <em>green</em> value of the color, keeping its alpha
+		 * @param green : the new <em>green</em> value [0, 255]
+		 * @return this editor
+		 */
+		public Editor setGreen(int green){
+			state = withChannel(state, 1, green);
+			return this;
+		}
+		/**
+		 * Set the <em>blue</em> value of the color, keeping its alpha
+		 * @param blue : the new <em>blue</em> value [0, 255]
+		 * @return this editor
+		 */
+		public Editor setBlue(int blue){
+			state = withChannel(state, 2, blue);
+			return this;
+		}
+		/**
+		 * Set the color from its RGBA values
+		 * @param red : the new <em>red</em> value [0, 255]
+		 * @param green : the new <em>green</em> value [0, 255]
+		 * @param blue : the new <em>blue</em> value [0, 255]
+		 * @param alpha : the new alpha [0, 255]
+		 * @return this editor
+		 */
+		public Editor setColor(int red, int green, int blue, int alpha){
+			return setColorRGB((clamp(0, alpha, 255) << 24) | (clamp(0, red, 255) << 16) | (clamp(0, green, 255) << 8) | clamp(0, blue, 255));
+		}
+		/**
+		 * Set the color from its RGB values, keeping its alpha
+		 * @param red : the new <em>red</em> value [0, 255]
+		 * @param green : the new <em>green</em> value [0, 255]
+		 * @param blue : the new <em>blue</em> value [0, 255]
+		 * @return this editor
+		 */
+		public Editor setColor(int red, int green, int blue){
+			state = (HSVAModel.packARGB((clamp(0, red, 255) << 16) | (clamp(0, green, 255) << 8) | clamp(0, blue, 255)) & ~0xFFL) | HSVAModel.alpha(state);
+			return this;
+		}
+		/**
+		 * Set the color, with its alpha
+		 * @param color : the new color
+		 * @return this editor
+		 */
+		public Editor setColor(Color color){ return setColorRGB(color.getRGB()); }
+		/**
+		 * Set the color from its HSV values and its alpha
+		 * @param hue : the new <em>hue</em> [0, 1]
+		 * @param saturation : the new <em>saturation</em> [0, 1]
+		 * @param value : the new <em>value</em> [0, 1]
+		 * @param alpha : the new alpha [0, 255]
+		 * @return this editor
+		 */
+		public Editor setColor(float hue, float saturation, float value, int alpha){
+			state = HSVAModel.pack(clamp(0, hue, 1), clamp(0, saturation, 1), clamp(0, value, 1), clamp(0, alpha, 255));
+			return this;
+		}
+		/**
+		 * Set the color from its HSV values, keeping its alpha
+		 * @param hue : the new <em>hue</em> [0, 1]
+		 * @param saturation : the new <em>saturation</em> [0, 1]
+		 * @param value : the new <em>value</em> [0, 1]
+		 * @return this editor
+		 */
+		public Editor setColor(float hue, float saturation, float value){
+			state = HSVAModel.pack(clamp(0, hue, 1), clamp(0, saturation, 1), clamp(0, value, 1), HSVAModel.alpha(state));
+			return this;
+		}
+		/**
+		 * Set the color from the hex ARGB format
+		 * @param argb : the new color in the hex ARGB format
+		 * @return this editor
+		 */
+		public Editor setColorRGB(int argb){
+			state = HSVAModel.packARGB(argb);
+			return this;
+		}
+		/**
+		 * Set the color from its packed HSV values and alpha
+		 * @param hsva : the new color, packed by <code>HSVAModel.pack</code>
+		 * @return this editor
+		 */
+		public Editor setColorHSVA(long hsva){
+			state = hsva;
+			return this;
+		}
+
+		/**
+		 * Return the <em>hue</em> of the color being edited
+		 * @return the <em>hue</em> [0, 1]
+		 */
+		public float getHue(){ return HSVAModel.hue(state); }
+		/**
+		 * Return the <em>saturation</em> of the color being edited
+		 * @return the <em>saturation</em> [0, 1]
+		 */
+		public float getSaturation(){ return HSVAModel.saturation(state); }
+		/**
+		 * Return the <em>value</em> of the color being edited
+		 * @return the <em>value</em> [0, 1]
+		 */
+		public float getValue(){ return HSVAModel.value(state); }
+		/**
+		 * Return the alpha of the color being edited
+		 * @return the alpha [0, 255]
+		 */
+		public int getAlpha(){ return HSVAModel.alpha(state); }
+		/**
+		 * Return the color being edited in the hex ARGB format
+		 * @return the color in the hex ARGB format
+		 */
+		public int getColorRGB(){ return HSVAModel.argb(state); }
+		/**
+		 * Return the color being edited
+		 * @return the color, packed by <code>HSVAModel.pack</code>
+		 */
+		public long getColorHSVA(){ return state; }
+	}
+
 	/**
 	 * Private listener that takes care of the mouse event for this component
 	 */
@@ -456,13 +1405,12 @@ public class ColorWheel extends JComponent{
 
 		@Override
 		public void mousePressed(MouseEvent e){
+			WheelHitMap map = wheel.hitMap();
 			int nx = e.getX() - (wheel.radius);
 			int ny = wheel.radius - e.getY();
-			int sqrMagnitude = nx*nx + ny*ny;
-			double alpha = Math.atan2(ny, nx);
-			selection = getSelection(sqrMagnitude, wheel.wheelRadius, wheel.widthSlider, wheel.borderSize, wheel.angleA, wheel.angleB, alpha);
+			selection = map.zone(e.getX(), e.getY());
 			selection = selection == BORDER ? NOTHING_SELECTED : selection;
-			changeColor(sqrMagnitude, alpha);
+			changeColor(nx*nx + ny*ny, map.angle(e.getX(), e.getY()));
 		}
 		@Override
 		public void mouseReleased(MouseEvent e){
@@ -472,51 +1420,56 @@ public class ColorWheel extends JComponent{
 		public void mouseDragged(MouseEvent e){
 			int nx = e.getX() - wheel.radius;
 			int ny = wheel.radius - e.getY();
-			changeColor(nx*nx + ny*ny, Math.atan2(ny, nx));
+			changeColor(nx*nx + ny*ny, wheel.hitMap().angle(e.getX(), e.getY()));
 		}
 		private void changeColor(int sqrMagnitude,double alpha){
+			wheel.syncView(); // coordinates of the color in the space of the wheel, for the ones not picked
 			switch (selection){
 				case COLOR_SELECTED:
-					wheel.hue = (float)(alpha / Math.PI / 2);
-					wheel.sat = (float)(Math.sqrt(sqrMagnitude) / wheel.wheelRadius);
-					if (wheel.sat > 1)
-						wheel.sat = 1;
-					wheel.bufferedColor = null;
-					wheel.fireColorChangeEvent();
+					float hue = (float)(alpha / Math.PI / 2), saturation = (float)Math.min(1, Math.sqrt(sqrMagnitude) / wheel.wheelRadius);
+					if (wheel.palette != null)
+						wheel.snapColor(hue, saturation, wheel.b);
+					else if (wheel.colorSpace != ColorSpace.HSB)
+						wheel.pickColor(hue, saturation, wheel.b);
+					else
+						wheel.model.setHueSaturation(hue, saturation);
 					break;
 				case ALPHA_SELECTED:
 					wheel.setAlpha((int)(255*computeAlpha(alpha, wheel.angleB, wheel.delta)));
 					break;
 				case VALUE_SELECTED:
-					wheel.setValue((float)computeValue(alpha, wheel.angleA, wheel.delta));
+					float value = clamp(0, (float)computeValue(alpha, wheel.angleA, wheel.delta), 1);
+					if (wheel.palette != null)
+						wheel.snapColor(wheel.hue, wheel.sat, value);
+					else if (wheel.colorSpace != ColorSpace.HSB)
+						wheel.pickColor(wheel.hue, wheel.sat, value);
+					else
+						wheel.setValue(value);
 				default:
 					break;
 			}
-			if (selection != NOTHING_SELECTED)
-				wheel.repaint();
 		}
 	}
 	/**
-	 * Compute and return the xy coordinates, centered on the center of the wheel, of the color cursor
+	 * Compute the xy coordinates, centered on the center of the wheel, of the color cursor
 	 * @param hue : the <em>hue</em> of the selected color
 	 * @param saturation : the <em>saturation</em> of the selected color
 	 * @param rad : the radius of the wheel
-	 * @return the cartesian coordinate of the color cursor
+	 * @param coords : receives the cartesian coordinate of the color cursor
 	 */
-	private static double[] getCoordinate(float hue, float saturation, int rad){
-		double[] coords = new double[2];
+	private static void getCoordinate(float hue, float saturation, int rad, double[] coords){
 		coords[0] = Math.cos(2*Math.PI*hue)*saturation*rad;
 		coords[1] = -Math.sin(2*Math.PI*hue)*saturation*rad;
-		return coords;
 	}
 	/**
 	 * compute the cartesian coordinate equivalent of a polar coordinate
 	 * @param angle : the angle of the coordinate
 	 * @param rad : the distance relative to the center of the coordinate
-	 * @return the cartesian coordinate
+	 * @param coords : receives the cartesian coordinate
 	 */
-	private static double[] getCoordinate(double angle, int rad){
-		return new double[]{Math.cos(angle)*rad, -Math.sin(angle)*rad};
+	private static void getCoordinate(double angle, int rad, double[] coords){
+		coords[0] = Math.cos(angle)*rad;
+		coords[1] = -Math.sin(angle)*rad;
 	}
 	/**
 	 * Compute and return what part of the wheel a point is in
@@ -529,7 +1482,7 @@ public class ColorWheel extends JComponent{
 	 * @param alpha : the angle relative to the positive x axis of the point's vector
 	 * @return the selected zone
 	 */
-	private static int getSelection(int sqrMagnitude, int wheelRad, int widthSlider, int borderWidth, double thetaA, double thetaB, double alpha){
+	static int getSelection(int sqrMagnitude, int wheelRad, int widthSlider, int borderWidth, double thetaA, double thetaB, double alpha){
 		int rad = wheelRad;
 		alpha = Math.abs(alpha);
 
@@ -558,7 +1511,7 @@ public class ColorWheel extends JComponent{
 	 * @param delta : the angle that the slider occupies
 	 * @return the <em>value</em>
 	 */
-	private static double computeValue(double alpha, double theta, double delta){
+	static double computeValue(double alpha, double theta, double delta){
 		if (alpha > 0 && alpha <= theta)
 			return 1;
 		if (alpha < 0 && alpha >= -theta)
@@ -572,7 +1525,7 @@ public class ColorWheel extends JComponent{
 	 * @param delta : the angle that the slider occupies
 	 * @return the <em>alpha</em>
 	 */
-	private static double computeAlpha(double alpha, double theta, double delta){ return (alpha + theta)/delta; }
+	static double computeAlpha(double alpha, double theta, double delta){ return (alpha + theta)/delta; }
 	/**
 	 * Inverse of <code>computeAlpha</code>.</br>
 	 * Compute the angle of the cursor based on the <em>alpha</em> parameter
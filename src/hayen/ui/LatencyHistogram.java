@@ -0,0 +1,68 @@
+package hayen.ui;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations, in nanoseconds, used by <code>WheelMetrics</code>.</br>
+ * Durations are counted in logarithmic buckets, four per power of two, so recording is a few atomic increments and any percentile is known within 25%.
+ * @see hayen.ui.WheelMetrics
+ */
+final class LatencyHistogram {
+
+	/**
+	 * Buckets per power of two, as a number of bits
+	 */
+	private static final int SUB_BITS = 2;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	static final int BUCKETS = SUB_BUCKETS + (62 - SUB_BITS + 1)*SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final LongAdder total = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Count a duration
+	 * @param nanos : the duration, in nanoseconds
+	 */
+	void record(long nanos){
+		if (nanos < 0)
+			nanos = 0;
+		buckets.incrementAndGet(bucket(nanos));
+		total.add(nanos);
+		if (nanos > max.get())
+			max.accumulateAndGet(nanos, Math::max);
+	}
+
+	/**
+	 * Return the durations counted so far
+	 * @return a copy of the histogram
+	 */
+	WheelMetrics.Latency snapshot(){
+		long[] counts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++)
+			counts[i] = buckets.get(i);
+		return new WheelMetrics.Latency(counts, total.sum(), max.get());
+	}
+
+	/**
+	 * Return the bucket of a duration
+	 */
+	static int bucket(long nanos){
+		if (nanos < SUB_BUCKETS)
+			return (int)nanos;
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		return SUB_BUCKETS + (exponent - SUB_BITS)*SUB_BUCKETS + (int)((nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+	}
+	/**
+	 * Return the largest duration counted in a bucket
+	 */
+	static long upperBound(int bucket){
+		if (bucket < SUB_BUCKETS)
+			return bucket;
+		int exponent = (bucket - SUB_BUCKETS)/SUB_BUCKETS + SUB_BITS;
+		long mantissa = SUB_BUCKETS + (bucket - SUB_BUCKETS)%SUB_BUCKETS + 1;
+		return exponent == 62 && mantissa == 2*SUB_BUCKETS ? Long.MAX_VALUE : (mantissa << (exponent - SUB_BITS)) - 1;
+	}
+}
@@ -0,0 +1,169 @@
+package hayen.ui;
+
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Renders the wheel of a <code>ColorWheel</code> off the event dispatch thread while it is being resized.</br>
+ * Each new size first starts a render at a quarter of the resolution, used as a preview, and the full resolution wheel is only rendered once the size
+ * stayed the same for a while. Renders made obsolete by a newer size are cancelled, or dropped if they already started.
+ * @see hayen.ui.ColorWheel#setProgressiveRendering(boolean)
+ */
+final class ProgressiveRenderer {
+
+	/**
+	 * Ratio between the resolution of the wheel and the one of the preview
+	 */
+	static final int COARSE_FACTOR = 4;
+	/**
+	 * Smallest diameter for which a preview is worth rendering
+	 */
+	private static final int MIN_COARSE_DIAMETER = 16*COARSE_FACTOR;
+
+	private static final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "ColorWheel renderer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final ColorWheel owner;
+	private final Timer settle;
+	private Future<?> coarse, full;
+	private int generation;
+	private boolean pending;
+	private WheelImageCache.Key key;
+	private float value;
+	private boolean overlay;
+	private double scale;
+	/**
+	 * Low resolution wheel of the size being rendered, null until it is ready
+	 */
+	BufferedImage preview;
+
+	/**
+	 * @param owner : the wheel to render
+	 * @param delay : the time, in milliseconds, the size has to stay the same before rendering the full resolution wheel
+	 */
+	ProgressiveRenderer(ColorWheel owner, int delay){
+		this.owner = owner;
+		settle = new Timer(delay, e -> renderFull());
+		settle.setRepeats(false);
+	}
+
+	void setDelay(int delay){
+		settle.setInitialDelay(delay);
+		settle.setDelay(delay);
+	}
+	int getDelay(){ return settle.getInitialDelay(); }
+
+	/**
+	 * Return if a render is scheduled or running, in which case the current image of the wheel is out of date
+	 * @return true if the wheel is being rendered
+	 */
+	boolean isPending(){ return pending; }
+
+	/**
+	 * Start rendering the wheel at a new size, cancelling the renders of the previous one.</br>
+	 * Must be called on the event dispatch thread
+	 * @param key : the geometry key of the new layout
+	 * @param value : the selected <em>value</em>
+	 * @param overlay : true if the <em>value</em> is applied as an overlay, in which case the full resolution wheel is rendered at full <em>value</em>
+	 * @param scale : the device scale at which the wheel is painted
+	 */
+	void resize(WheelImageCache.Key key, float value, boolean overlay, double scale){
+		cancel();
+		this.key = key;
+		this.value = overlay ? 1 : value;
+		this.overlay = overlay;
+		this.scale = scale;
+		pending = true;
+		final int gen = generation;
+		if (key.diameter >= MIN_COARSE_DIAMETER)
+			coarse = executor.submit(() -> {
+				final BufferedImage image = renderCoarse(WheelImage.scaled(key, scale), value);
+				SwingUtilities.invokeLater(() -> {
+					if (gen != generation)
+						return;
+					preview = image;
+					owner.repaint();
+				});
+			});
+		settle.restart();
+	}
+
+	/**
+	 * Cancel every scheduled render and drop the ones running.</br>
+	 * Must be called on the event dispatch thread
+	 */
+	void cancel(){
+		generation++;
+		pending = false;
+		preview = null;
+		settle.stop();
+		if (coarse != null)
+			coarse.cancel(false);
+		if (full != null)
+			full.cancel(false);
+		coarse = full = null;
+	}
+
+	/**
+	 * Render the wheel at full resolution once the size settled, then hand it to the wheel
+	 */
+	private void renderFull(){
+		final int gen = generation;
+		final WheelImageCache.Key key = this.key;
+		final float value = this.value;
+		final boolean overlay = this.overlay;
+		final double scale = this.scale;
+		full = executor.submit(() -> {
+			final long start = WheelMetrics.start();
+			final WheelImageCache.Key layout = WheelImage.scaled(key, scale);
+			final WheelImageCache.Entry<WheelGeometry> geometry = WheelImageCache.geometry(layout);
+			final WheelImageCache.Entry<BufferedImage> wheel = WheelImageCache.image(layout.with(WheelImageCache.WHEEL, value), geometry.value);
+			final WheelImageCache.Entry<BufferedImage> shade = overlay ? WheelImageCache.image(layout.with(WheelImageCache.SHADE, 0), geometry.value) : null;
+			WheelMetrics.regenerated(WheelMetrics.Cause.RESIZE, start);
+			SwingUtilities.invokeLater(() -> {
+				if (gen != generation) {
+					WheelImageCache.release(wheel);
+					WheelImageCache.release(shade);
+					WheelImageCache.release(geometry);
+					return;
+				}
+				pending = false;
+				preview = null;
+				WheelImage wheelImage = new WheelImage(key, WheelImageCache.WHEEL, value);
+				wheelImage.install(scale, geometry, wheel);
+				WheelImage shadeImage = null;
+				if (shade != null) {
+					shadeImage = new WheelImage(key, WheelImageCache.SHADE, 0);
+					shadeImage.install(scale, null, shade);
+				}
+				owner.installWheel(wheelImage, shadeImage);
+				owner.repaint();
+			});
+		});
+	}
+
+	/**
+	 * Render a wheel of the same layout at a quarter of the resolution.</br>
+	 * The radius of the chromatic circle and the width of the sliders are scaled down like the diameter, the radius only being reduced if the rest of the
+	 * wheel would not fit after rounding
+	 * @param key : the geometry key of the layout, at the device scale
+	 * @param value : the <em>value</em> of the chromatic circle
+	 * @return the low resolution wheel
+	 */
+	private static BufferedImage renderCoarse(WheelImageCache.Key key, float value){
+		int diameter = key.diameter/COARSE_FACTOR;
+		int widthSlider = key.widthSlider == 0 ? 0 : Math.max(1, key.widthSlider/COARSE_FACTOR); // a compact wheel has no slider
+		int fit = widthSlider == 0 ? (diameter - 3)/2 : diameter/2 - widthSlider - 2;
+		int wheelRadius = Math.max(0, Math.min(key.wheelRadius/COARSE_FACTOR, fit));
+		WheelGeometry geometry = WheelGeometry.build(diameter, wheelRadius, widthSlider, key.angleA, key.angleB, key.delta(), key.fast, key.antialiased);
+		BufferedImage image = new BufferedImage(diameter, diameter, BufferedImage.TYPE_INT_ARGB);
+		WheelRenderer.render(image, geometry, key.space, value);
+		return image;
+	}
+}
@@ -0,0 +1,134 @@
+package hayen.ui;
+
+import java.awt.*;
+import java.awt.geom.Path2D;
+
+/**
+ * Vector drawing of the <em>value</em> and <em>alpha</em> sliders of a compact <code>ColorWheel</code>, which only keeps the chromatic circle in an image.</br>
+ * Java2D has no paint following the angle around a point, so each slider is drawn as a sequence of ring sectors of one color each, one per level of the
+ * slider, between the angles where a rendered slider changes level. The sectors are filled without antialiasing: like the pixels of a rendered wheel, a
+ * pixel belongs to a sector if its center does, so the sectors tile the ring without seams and it looks the same as the rendered one, apart from a few pixels
+ * whose center is almost exactly on an edge. Only the sectors in the clip are drawn.
+ * @see ColorWheel#setCompact(boolean)
+ */
+final class SliderRings {
+
+	/**
+	 * Number of sectors of a slider: the levels a rendered slider goes through, its last level being reached only at its very end
+	 */
+	static final int SECTORS = 255;
+	private static final Color BORDER = new Color(0xFF303030);
+
+	private final int radius, wheelRadius, widthSlider;
+	private final double angleA, angleB, delta;
+	/**
+	 * Color of each sector of the <em>value</em> slider, from its top to its bottom, and of the <em>alpha</em> slider, from its bottom to its top
+	 */
+	private final Color[] values, alphas;
+	private final Path2D.Double path = new Path2D.Double();
+
+	/**
+	 * @param radius : the distance between the border of the component and the center of the wheel
+	 * @param wheelRadius : the radius of the chromatic circle
+	 * @param widthSlider : the width of the sliders
+	 * @param angleA : the angle at which the <em>value</em> slider starts
+	 * @param angleB : the angle at which the <em>alpha</em> slider starts
+	 * @param delta : the angle that the sliders occupy
+	 */
+	SliderRings(int radius, int wheelRadius, int widthSlider, double angleA, double angleB, double delta){
+		this.radius = radius;
+		this.wheelRadius = wheelRadius;
+		this.widthSlider = widthSlider;
+		this.angleA = angleA;
+		this.angleB = angleB;
+		this.delta = delta;
+		values = new Color[SECTORS];
+		alphas = new Color[SECTORS];
+		for (int i = 0; i < SECTORS; i++) {
+			values[i] = new Color(SECTORS - 1 - i, SECTORS - 1 - i, SECTORS - 1 - i); // from the top of the slider, where the value is 1
+			alphas[i] = new Color(0, 0, 0, i);
+		}
+	}
+
+	/**
+	 * Return if these rings are drawn for a layout
+	 */
+	boolean matches(int radius, int wheelRadius, int widthSlider, double angleA, double angleB){
+		return this.radius == radius && this.wheelRadius == wheelRadius && this.widthSlider == widthSlider && this.angleA == angleA && this.angleB == angleB;
+	}
+
+	/**
+	 * Draw the sliders and their outer border
+	 * @param g2 : the graphics to draw with
+	 * @param area : the part of the component to draw, null to draw everything
+	 */
+	void paint(Graphics2D g2, Rectangle area){
+		if (widthSlider <= 0 || wheelRadius < 0)
+			return;
+		Object antialiasing = g2.getRenderingHint(RenderingHints.KEY_ANTIALIASING), control = g2.getRenderingHint(RenderingHints.KEY_STROKE_CONTROL);
+		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+		g2.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE); // no rounding of the coordinates to the pixels
+		double inside = wheelRadius + 1, outside = inside + widthSlider;
+		paintRing(g2, area, values, angleA, inside, outside);
+		paintRing(g2, area, alphas, -angleB, inside, outside);
+		g2.setColor(BORDER);
+		fillSector(g2, area, angleA, delta, outside, outside + 1);
+		fillSector(g2, area, -angleB, delta, outside, outside + 1);
+		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialiasing != null ? antialiasing : RenderingHints.VALUE_ANTIALIAS_DEFAULT);
+		g2.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, control != null ? control : RenderingHints.VALUE_STROKE_DEFAULT);
+	}
+	private void paintRing(Graphics2D g2, Rectangle area, Color[] colors, double start, double inside, double outside){
+		double extent = delta/colors.length;
+		for (int i = 0; i < colors.length; i++) {
+			g2.setColor(colors[i]);
+			fillSector(g2, area, start + i*extent, extent, inside, outside);
+		}
+	}
+	/**
+	 * Fill the part of a ring between two angles, if it is in the area
+	 * @param start : the angle the sector starts at, counterclockwise from the right
+	 * @param extent : the angle of the sector
+	 */
+	private void fillSector(Graphics2D g2, Rectangle area, double start, double extent, double inside, double outside){
+		double c = radius + 0.5; // center of the pixel at the center of the wheel
+		if (area != null) {
+			// the corners of the sector, and one more pixel for the bulge of the arc
+			double x1 = Double.MAX_VALUE, y1 = Double.MAX_VALUE, x2 = -Double.MAX_VALUE, y2 = -Double.MAX_VALUE;
+			for (int k = 0; k < 4; k++) {
+				double a = k < 2 ? start : start + extent, r = (k & 1) == 0 ? inside : outside;
+				double x = c + r*Math.cos(a), y = c - r*Math.sin(a);
+				x1 = Math.min(x1, x);
+				y1 = Math.min(y1, y);
+				x2 = Math.max(x2, x);
+				y2 = Math.max(y2, y);
+			}
+			double bulge = outside*(1 - Math.cos(extent/2)) + 1;
+			if (x2 + bulge < area.x || y2 + bulge < area.y || x1 - bulge > area.x + area.width || y1 - bulge > area.y + area.height)
+				return;
+		}
+		// A rendered wheel keeps the pixels exactly on the outer edge of a ring in it, and the pixels just outside of a circle of integer radius r are at least
+		// 1/(2r) away from it. The edges are moved out by half of that, and drawn as polygons circumscribing them within a quarter of it, instead of being
+		// flattened inside of them by Java2D
+		double margin = 1/(4*outside);
+		int steps = Math.max(1, (int)Math.ceil(extent*outside));
+		double step = extent/steps, scale = 1/Math.cos(step/2);
+		inside += margin;
+		outside += margin;
+		double out = outside*scale, in = inside*scale;
+		path.reset();
+		path.moveTo(c + outside*Math.cos(start), c - outside*Math.sin(start));
+		for (int k = 0; k < steps; k++) {
+			double a = start + (k + 0.5)*step;
+			path.lineTo(c + out*Math.cos(a), c - out*Math.sin(a));
+		}
+		path.lineTo(c + outside*Math.cos(start + extent), c - outside*Math.sin(start + extent));
+		path.lineTo(c + inside*Math.cos(start + extent), c - inside*Math.sin(start + extent));
+		for (int k = steps - 1; k >= 0; k--) {
+			double a = start + (k + 0.5)*step;
+			path.lineTo(c + in*Math.cos(a), c - in*Math.sin(a));
+		}
+		path.lineTo(c + inside*Math.cos(start), c - inside*Math.sin(start));
+		path.closePath();
+		g2.fill(path);
+	}
+}
@@ -0,0 +1,160 @@
+package hayen.ui;
+
+import hayen.color.HSVAModel;
+
+import javax.swing.*;
+import java.util.ArrayList;
+
+/**
+ * Scheduler of the color animations of every <code>ColorWheel</code>, on the event dispatch thread.</br>
+ * A single timer advances all the running animations at each frame, so each wheel changes its color, notifies its listeners and asks to be repainted at most
+ * once per frame, and the repaints of all the wheels are painted together. The colors are interpolated in HSV from the time elapsed since the start of each
+ * animation: when a frame runs over its time budget, the animations not advanced yet skip it and jump to where they should be at the next one, and a late frame
+ * fast-forwards them. An animation stops when the color of its wheel is changed by anything else.
+ * @see ColorWheel#animateTo(float, float, float, int, int)
+ */
+final class WheelAnimator {
+
+	/**
+	 * Time between two frames, in milliseconds
+	 */
+	static final int FRAME_PERIOD = 16;
+	/**
+	 * Time a frame can take advancing animations before the next ones are skipped, in nanoseconds
+	 */
+	static final long FRAME_BUDGET = 8_000_000L;
+
+	private static final ArrayList<Animation> animations = new ArrayList<Animation>();
+	private static final Timer timer = new Timer(FRAME_PERIOD, e -> tick());
+	/**
+	 * Index of the animation the next frame starts with, so that the ones skipped by a frame over budget go first at the next one
+	 */
+	private static int next;
+
+	private WheelAnimator(){}
+
+	/**
+	 * Start animating the color of a wheel, replacing its running animation if any. Must be called on the event dispatch thread
+	 * @param wheel : the wheel to animate
+	 * @param target : the packed color to reach
+	 * @param duration : the duration of the animation, in milliseconds
+	 */
+	static void start(ColorWheel wheel, long target, int duration){
+		stop(wheel);
+		long from = wheel.getModel().get();
+		if (duration <= 0 || from == target) {
+			wheel.getModel().set(target);
+			return;
+		}
+		animations.add(new Animation(wheel, from, target, System.nanoTime(), duration*1_000_000L));
+		if (!timer.isRunning())
+			timer.start();
+	}
+	/**
+	 * Stop the animation of a wheel where it is. Must be called on the event dispatch thread
+	 * @param wheel : the animated wheel
+	 * @return if the wheel was animated
+	 */
+	static boolean stop(ColorWheel wheel){
+		for (int i = 0; i < animations.size(); i++)
+			if (animations.get(i).wheel == wheel) {
+				remove(i);
+				return true;
+			}
+		return false;
+	}
+	/**
+	 * Return if a wheel is animated. Must be called on the event dispatch thread
+	 */
+	static boolean isAnimating(ColorWheel wheel){
+		for (Animation animation : animations)
+			if (animation.wheel == wheel)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Advance all the animations to the current time, until the budget of the frame is spent
+	 */
+	private static void tick(){
+		long start = System.nanoTime();
+		int count = animations.size();
+		for (int done = 0; done < count && !animations.isEmpty(); done++) {
+			if (done > 0 && System.nanoTime() - start > FRAME_BUDGET)
+				break; // the others are skipped and go first at the next frame
+			if (next >= animations.size())
+				next = 0;
+			Animation animation = animations.get(next);
+			if (animation.advance(System.nanoTime()))
+				next++;
+			else
+				remove(next);
+		}
+		if (animations.isEmpty())
+			timer.stop();
+	}
+	private static void remove(int i){
+		animations.remove(i);
+		if (i < next)
+			next--;
+		if (animations.isEmpty())
+			timer.stop();
+	}
+
+	/**
+	 * Transition of the color of one wheel
+	 */
+	private static final class Animation {
+		private final ColorWheel wheel;
+		private final float hue, saturation, value, dHue, dSaturation, dValue;
+		private final int alpha, dAlpha;
+		private final long target, start, duration;
+		/**
+		 * Last color set by this animation, any other one in the model means it was changed by something else
+		 */
+		private long current;
+
+		private Animation(ColorWheel wheel, long from, long target, long start, long duration){
+			this.wheel = wheel;
+			this.target = target;
+			this.start = start;
+			this.duration = duration;
+			current = from;
+			saturation = HSVAModel.saturation(from);
+			value = HSVAModel.value(from);
+			alpha = HSVAModel.alpha(from);
+			dSaturation = HSVAModel.saturation(target) - saturation;
+			dValue = HSVAModel.value(target) - value;
+			dAlpha = HSVAModel.alpha(target) - alpha;
+			// the hue of a gray is meaningless, so it is taken from the other end; otherwise it turns the shortest way around the wheel
+			float h0 = HSVAModel.hue(from), h1 = HSVAModel.hue(target);
+			if (saturation == 0)
+				h0 = h1;
+			else if (HSVAModel.saturation(target) == 0)
+				h1 = h0;
+			float d = h1 - h0;
+			hue = h0;
+			dHue = d > 0.5f ? d - 1 : d < -0.5f ? d + 1 : d;
+		}
+
+		/**
+		 * Set the color of the wheel at a time
+		 * @param now : the time, from <code>System.nanoTime</code>
+		 * @return if the animation is still running
+		 */
+		private boolean advance(long now){
+			HSVAModel model = wheel.getModel();
+			if (now - start >= duration) {
+				model.compareAndSet(current, target);
+				return false;
+			}
+			float t = (now - start)/(float)duration;
+			t = t*t*(3 - 2*t); // eased in and out
+			long next = HSVAModel.pack(hue + dHue*t, saturation + dSaturation*t, value + dValue*t, alpha + Math.round(dAlpha*t));
+			if (!model.compareAndSet(current, next))
+				return false;
+			current = next;
+			return true;
+		}
+	}
+}
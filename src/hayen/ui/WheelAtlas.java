@@ -0,0 +1,189 @@
+package hayen.ui;
+
+import hayen.color.ColorSpace;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+
+/**
+ * File of wheels rendered in advance by <code>WheelAtlasBuilder</code>, memory-mapped so that a wheel found in it costs a lookup instead of a render.</br>
+ * Opening an atlas only reads its index. The pixels of a wheel are mapped the first time it is looked up, and its image reads them straight from the file:
+ * nothing is copied in the heap, and the pages are shared with every other process using the same atlas. The images are read-only.
+ * @see hayen.ui.WheelImageCache#setAtlas(WheelAtlas)
+ * @see hayen.ui.WheelAtlasBuilder
+ */
+public final class WheelAtlas implements Closeable {
+
+	static final int MAGIC = 0x43574154; // "CWAT"
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 16;
+	static final int INDEX_ENTRY_BYTES = 48;
+	/**
+	 * Alignment of the pixels of each wheel in the file
+	 */
+	static final int ALIGNMENT = 64;
+	static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	private static final DirectColorModel ARGB = (DirectColorModel)ColorModel.getRGBdefault();
+
+	private final FileChannel channel;
+	private final HashMap<WheelImageCache.Key, Region> regions;
+
+	/**
+	 * Pixels of one wheel in the file, mapped on first use
+	 */
+	private static final class Region {
+		final long offset;
+		IntBuffer pixels;
+
+		Region(long offset){ this.offset = offset; }
+	}
+
+	private WheelAtlas(FileChannel channel, HashMap<WheelImageCache.Key, Region> regions){
+		this.channel = channel;
+		this.regions = regions;
+	}
+
+	/**
+	 * Open an atlas, reading its index
+	 * @param file : the atlas file
+	 * @return the atlas
+	 * @throws IOException if the file cannot be read or is not a valid atlas
+	 */
+	public static WheelAtlas open(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			ByteBuffer header = read(channel, 0, HEADER_BYTES);
+			if (header.getInt() != MAGIC)
+				throw new IOException(file + " is not a wheel atlas");
+			int version = header.getInt();
+			if (version != VERSION)
+				throw new IOException(file + " has an unsupported atlas version: " + version);
+			int count = header.getInt();
+			long size = channel.size();
+			if (count < 0 || count > (Math.min(size, Integer.MAX_VALUE) - HEADER_BYTES)/INDEX_ENTRY_BYTES) // the index is in the file, and its size in an int
+				throw new IOException(file + " has a corrupted index");
+
+			ByteBuffer index = read(channel, HEADER_BYTES, count*INDEX_ENTRY_BYTES);
+			HashMap<WheelImageCache.Key, Region> regions = new HashMap<WheelImageCache.Key, Region>(count*2);
+			for (int i = 0; i < count; i++) {
+				int kind = index.getInt(), diameter = index.getInt(), wheelRadius = index.getInt(), widthSlider = index.getInt();
+				double angleA = index.getDouble(), angleB = index.getDouble();
+				float value = index.getFloat();
+				int mode = index.getInt();
+				boolean fast = (mode & 1) != 0, antialiased = (mode & 2) != 0;
+				long offset = index.getLong();
+				// the square of the diameter fits in an int, and the pixels of a wheel in a single mapped buffer
+				if ((kind != WheelImageCache.WHEEL && kind != WheelImageCache.SHADE) || diameter <= 0 || diameter > 46340 || 4L*diameter*diameter > Integer.MAX_VALUE
+						|| offset < 0 || end(offset, diameter) > size)
+					throw new IOException(file + " has a corrupted index");
+				regions.put(new WheelImageCache.Key(kind, diameter, wheelRadius, widthSlider, angleA, angleB, value, fast, antialiased, ColorSpace.HSB),
+						new Region(offset));
+			}
+			return new WheelAtlas(channel, regions);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Return the number of images in this atlas
+	 * @return the number of images
+	 */
+	public int getEntryCount(){ return regions.size(); }
+
+	/**
+	 * Close the file. Images already looked up stay valid, the others cannot be mapped anymore
+	 * @throws IOException if closing the file failed
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Return the image of a wheel, reading its pixels straight from the file
+	 * @param key : the key of the image, of kind <code>WHEEL</code> or <code>SHADE</code>
+	 * @return a read-only image, or null if the atlas does not hold this wheel or it could not be mapped
+	 */
+	synchronized BufferedImage image(WheelImageCache.Key key){
+		Region region = regions.get(key);
+		if (region == null)
+			return null;
+		if (region.pixels == null) {
+			try {
+				region.pixels = channel.map(FileChannel.MapMode.READ_ONLY, region.offset, 4L*key.diameter*key.diameter).order(ORDER).asIntBuffer();
+			} catch (IOException | RuntimeException e) { // closed, the file changed, or it cannot be mapped: rendered instead
+				return null;
+			}
+		}
+		DataBuffer buffer = new MappedDataBuffer(region.pixels);
+		SinglePixelPackedSampleModel model = new SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, key.diameter, key.diameter, ARGB.getMasks());
+		WritableRaster raster = Raster.createWritableRaster(model, buffer, new Point());
+		return new BufferedImage(ARGB, raster, false, null);
+	}
+
+	/**
+	 * Return the end of the pixels of a wheel in the file
+	 * @return the offset after its last pixel, or <code>Long.MAX_VALUE</code> if it overflows
+	 */
+	private static long end(long offset, int diameter){
+		try {
+			return Math.addExact(offset, 4L*diameter*diameter);
+		} catch (ArithmeticException e) {
+			return Long.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Return the pixels of an image of an atlas
+	 * @param image : the image
+	 * @return the pixels, or null if the image does not come from an atlas
+	 */
+	static IntBuffer pixels(BufferedImage image){
+		DataBuffer buffer = image.getRaster().getDataBuffer();
+		return buffer instanceof MappedDataBuffer ? ((MappedDataBuffer)buffer).pixels : null;
+	}
+
+	private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ORDER);
+		while (buffer.hasRemaining())
+			if (channel.read(buffer, position + buffer.position()) < 0)
+				throw new IOException("truncated wheel atlas");
+		return buffer.flip();
+	}
+
+	/**
+	 * <code>DataBuffer</code> of packed ARGB pixels held in an <code>IntBuffer</code>, so that a <code>BufferedImage</code> can read a mapped file without
+	 * copying it. Writing in it throws <code>ReadOnlyBufferException</code> for a read-only buffer
+	 */
+	private static final class MappedDataBuffer extends DataBuffer {
+		private final IntBuffer pixels;
+
+		MappedDataBuffer(IntBuffer pixels){
+			super(DataBuffer.TYPE_INT, pixels.capacity());
+			this.pixels = pixels;
+		}
+
+		@Override
+		public int getElem(int bank, int i){ return pixels.get(i); }
+		@Override
+		public void setElem(int bank, int i, int val){ pixels.put(i, val); }
+	}
+}
@@ -0,0 +1,175 @@
+package hayen.ui;
+
+import hayen.color.ColorSpace;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+
+/**
+ * Tool rendering wheels in advance into a <code>WheelAtlas</code> file.</br>
+ * The atlas starts with an index of the wheels it holds, followed by the raw ARGB pixels of each of them. A wheel is rendered for every combination of the
+ * diameters, slider angles and <em>value</em>s asked, with the layout a <code>ColorWheel</code> of that size gives it.</br>
+ * Usage: <code>java hayen.ui.WheelAtlasBuilder file [--diameters 128,256] [--values 1,0.5] [--angles 15] [--slider 10] [--border 1] [--fast] [--antialias] [--shade]</code>,
+ * the angles being in degrees.
+ * @see hayen.ui.WheelAtlas
+ */
+public final class WheelAtlasBuilder {
+
+	private WheelAtlasBuilder(){}
+
+	/**
+	 * Render wheels into an atlas file, replacing it if it exists
+	 * @param file : the atlas file to write
+	 * @param diameters : the diameters of the wheels, in pixels
+	 * @param values : the <em>value</em>s of the chromatic circles
+	 * @param sliderAngles : the slider angles of the wheels, in radians, as given to <code>ColorWheel.setSliderAngle</code>
+	 * @param widthSlider : the width of the sliders
+	 * @param borderSize : the size of the border
+	 * @param fast : true to render the wheels of the fast rendering mode
+	 * @param shade : true to also render the shade masks used when the <em>value</em> is an overlay
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(Path file, int[] diameters, float[] values, double[] sliderAngles, int widthSlider, int borderSize, boolean fast, boolean shade) throws IOException {
+		write(file, diameters, values, sliderAngles, widthSlider, borderSize, fast, false, shade);
+	}
+	/**
+	 * Render wheels into an atlas file, replacing it if it exists
+	 * @param file : the atlas file to write
+	 * @param diameters : the diameters of the wheels, in pixels
+	 * @param values : the <em>value</em>s of the chromatic circles
+	 * @param sliderAngles : the slider angles of the wheels, in radians, as given to <code>ColorWheel.setSliderAngle</code>
+	 * @param widthSlider : the width of the sliders
+	 * @param borderSize : the size of the border
+	 * @param fast : true to render the wheels of the fast rendering mode
+	 * @param antialiased : true to render the wheels of the antialiased rendering mode
+	 * @param shade : true to also render the shade masks used when the <em>value</em> is an overlay
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(Path file, int[] diameters, float[] values, double[] sliderAngles, int widthSlider, int borderSize, boolean fast, boolean antialiased,
+			boolean shade) throws IOException {
+		LinkedHashSet<WheelImageCache.Key> layouts = new LinkedHashSet<WheelImageCache.Key>();
+		for (int diameter : diameters)
+			for (double theta : sliderAngles) {
+				// same layout as ColorWheel.updateRadius and ColorWheel.setSliderAngle
+				int wheelRadius = diameter/2 - widthSlider - borderSize*2;
+				if (wheelRadius > 0)
+					layouts.add(new WheelImageCache.Key(WheelImageCache.GEOMETRY, diameter, wheelRadius, widthSlider, Math.PI/2 + theta, Math.PI/2 - theta, 0, fast,
+							antialiased, ColorSpace.HSB));
+			}
+		ArrayList<WheelImageCache.Key> keys = new ArrayList<WheelImageCache.Key>();
+		for (WheelImageCache.Key layout : layouts) {
+			LinkedHashSet<WheelImageCache.Key> images = new LinkedHashSet<WheelImageCache.Key>();
+			for (float value : values)
+				images.add(layout.with(WheelImageCache.WHEEL, value));
+			if (shade)
+				images.add(layout.with(WheelImageCache.SHADE, 0));
+			keys.addAll(images);
+		}
+
+		long[] offsets = new long[keys.size()];
+		long offset = align(WheelAtlas.HEADER_BYTES + (long)keys.size()*WheelAtlas.INDEX_ENTRY_BYTES);
+		for (int i = 0; i < offsets.length; i++) {
+			offsets[i] = offset;
+			offset = align(offset + 4L*keys.get(i).diameter*keys.get(i).diameter);
+		}
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer index = ByteBuffer.allocate(WheelAtlas.HEADER_BYTES + keys.size()*WheelAtlas.INDEX_ENTRY_BYTES).order(WheelAtlas.ORDER);
+			index.putInt(WheelAtlas.MAGIC).putInt(WheelAtlas.VERSION).putInt(keys.size()).putInt(0);
+			for (int i = 0; i < offsets.length; i++) {
+				WheelImageCache.Key key = keys.get(i);
+				index.putInt(key.kind).putInt(key.diameter).putInt(key.wheelRadius).putInt(key.widthSlider);
+				index.putDouble(key.angleA).putDouble(key.angleB).putFloat(key.value).putInt((key.fast ? 1 : 0) | (key.antialiased ? 2 : 0)).putLong(offsets[i]);
+			}
+			write(channel, index.flip(), 0);
+
+			WheelGeometry geometry = null;
+			for (int i = 0; i < offsets.length; i++) {
+				WheelImageCache.Key key = keys.get(i);
+				if (geometry == null || !geometry.matches(key.diameter, key.wheelRadius, key.widthSlider, key.angleA, key.angleB, key.fast, key.antialiased))
+					geometry = WheelGeometry.build(key.diameter, key.wheelRadius, key.widthSlider, key.angleA, key.angleB, key.delta(), key.fast,
+							key.antialiased);
+				BufferedImage image = new BufferedImage(key.diameter, key.diameter, BufferedImage.TYPE_INT_ARGB);
+				if (key.kind == WheelImageCache.SHADE)
+					WheelRenderer.renderShade(image, geometry);
+				else
+					WheelRenderer.render(image, geometry, key.value);
+				int[] pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+				ByteBuffer bytes = ByteBuffer.allocate(4*pixels.length).order(WheelAtlas.ORDER);
+				IntBuffer ints = bytes.asIntBuffer();
+				ints.put(pixels);
+				write(channel, bytes, offsets[i]);
+			}
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("usage: WheelAtlasBuilder file [--diameters 128,256] [--values 1,0.5] [--angles 15] [--slider 10] [--border 1] [--fast] [--antialias] [--shade]");
+			System.exit(2);
+		}
+		int[] diameters = {128, 256, 512};
+		float[] values = {1};
+		double[] angles = {Math.toRadians(15)};
+		int widthSlider = 10, borderSize = 1;
+		boolean fast = false, antialiased = false, shade = false;
+		for (int i = 1; i < args.length; i++) {
+			switch (args[i]) {
+			case "--diameters":
+				String[] d = args[++i].split(",");
+				diameters = new int[d.length];
+				for (int j = 0; j < d.length; j++)
+					diameters[j] = Integer.parseInt(d[j].trim());
+				break;
+			case "--values":
+				String[] v = args[++i].split(",");
+				values = new float[v.length];
+				for (int j = 0; j < v.length; j++)
+					values[j] = Float.parseFloat(v[j].trim());
+				break;
+			case "--angles":
+				String[] a = args[++i].split(",");
+				angles = new double[a.length];
+				for (int j = 0; j < a.length; j++)
+					angles[j] = Math.toRadians(Double.parseDouble(a[j].trim()));
+				break;
+			case "--slider":
+				widthSlider = Integer.parseInt(args[++i]);
+				break;
+			case "--border":
+				borderSize = Integer.parseInt(args[++i]);
+				break;
+			case "--fast":
+				fast = true;
+				break;
+			case "--antialias":
+				antialiased = true;
+				break;
+			case "--shade":
+				shade = true;
+				break;
+			default:
+				throw new IllegalArgumentException("unknown option: " + args[i]);
+			}
+		}
+		write(Paths.get(args[0]), diameters, values, angles, widthSlider, borderSize, fast, antialiased, shade);
+	}
+
+	private static long align(long offset){
+		return (offset + WheelAtlas.ALIGNMENT - 1) & -WheelAtlas.ALIGNMENT;
+	}
+
+	private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining())
+			channel.write(buffer, position + buffer.position());
+	}
+}
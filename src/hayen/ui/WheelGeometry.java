@@ -0,0 +1,544 @@
+package hayen.ui;
+
+import java.util.stream.IntStream;
+
+/**
+ * Polar geometry of a <code>ColorWheel</code> of a given layout.</br>
+ * The zone of every pixel is stored in a byte map, the pixels of the chromatic circle keep their <em>hue</em> and the pixels of the sliders and of the border,
+ * which do not depend on the selected color, keep their final ARGB value. The circle being convex, its pixels in a row are a single run, so only the bounds of
+ * the run are kept instead of the index of each pixel, and the <em>saturation</em> of a pixel, which only depends on its square distance to the center, is
+ * looked up in a table shared by all the rows. The table is cut in bands of rows so that it can be built and used in parallel, and it only has to be rebuilt
+ * when the layout of the wheel changes.</br>
+ * A <em>fast</em> geometry approximates the angle of the pixels of the chromatic circle with a polynomial instead of <code>Math.atan2</code>, and also keeps
+ * the part of their color that depends on both their <em>hue</em> and <em>saturation</em> as fixed-point weights, so that <code>WheelRenderer</code> can
+ * recolor them with integer arithmetic only.</br>
+ * An <em>antialiased</em> geometry smooths the edges of the circles and of the sliders. Only the pixels close enough to an edge for it to cross them are
+ * supersampled, so the extra cost follows the perimeter of the wheel instead of its area: the pixels that the samples put in a single zone are kept as any
+ * other, the ones only covered by the sliders, the borders and the outside keep their blended ARGB value with the other static pixels, and the ones partly
+ * covered by the chromatic circle are kept as edge pixels, blended with the color of the circle each time it is drawn.
+ * @see hayen.ui.WheelRenderer
+ */
+final class WheelGeometry {
+
+	/**
+	 * Number of rows in a band
+	 */
+	static final int BAND_HEIGHT = 32;
+	/**
+	 * Fixed-point unit of the weights of a fast geometry
+	 */
+	static final int WEIGHT_ONE = 1 << 15;
+	/**
+	 * Number of samples per side of an edge pixel of an antialiased geometry
+	 */
+	static final int SUBSAMPLES = 4;
+	static final int SAMPLES = SUBSAMPLES*SUBSAMPLES;
+	/**
+	 * Distance from the center of a pixel to its corners, beyond which an edge cannot cross it
+	 */
+	private static final double FOOTPRINT = Math.sqrt(0.5);
+	private static final int BORDER_COLOR = 0xFF303030;
+
+	final int diameter, wheelRadius, widthSlider;
+	final double angleA, angleB, delta;
+	final boolean fast, antialiased;
+	/**
+	 * Zone of each pixel, row by row, from its center
+	 */
+	final byte[] zones;
+	/**
+	 * <em>Saturation</em> of the pixels of the chromatic circle, by square distance to the center
+	 */
+	final float[] saturation;
+	final Band[] bands;
+	/**
+	 * Square distances to the center between which a pixel may be crossed by each circle of an antialiased geometry, from the inside out
+	 */
+	private final double[] edgeLow, edgeHigh;
+
+	/**
+	 * Rows of the table.</br>
+	 * The pixels of the chromatic circle in each row go from <code>colorStart</code> to <code>colorEnd</code> excluded, and <code>hue</code> holds their
+	 * <em>hue</em> row after row. <code>staticIndex</code> and <code>staticColor</code> describe the pixels of the sliders and of the border.
+	 * In a fast geometry, <code>weightQT</code> holds <code>1 - s*f</code> and <code>1 - s*(1 - f)</code> of each pixel of the circle, in units of
+	 * <code>WEIGHT_ONE</code>.</br>
+	 * The edge pixels of an antialiased geometry keep the <em>hue</em> and <em>saturation</em> of the part covered by the chromatic circle, the number of samples
+	 * in it in <code>edgeCoverage</code>, and the premultiplied ARGB value of the rest in <code>edgeStatic</code>. These tables are empty in other geometries
+	 */
+	static final class Band {
+		final int from, to;
+		int[] colorStart, colorEnd;
+		int colorCount;
+		float[] hue;
+		int[] weightQT;
+		int[] staticIndex, staticColor;
+		int[] edgeIndex, edgeCoverage, edgeStatic;
+		float[] edgeHue, edgeSaturation;
+
+		private Band(int from, int to){
+			this.from = from;
+			this.to = to;
+		}
+	}
+
+	private WheelGeometry(int diameter, int wheelRadius, int widthSlider, double angleA, double angleB, double delta, boolean fast, boolean antialiased){
+		this.fast = fast;
+		this.antialiased = antialiased;
+		this.diameter = diameter;
+		this.wheelRadius = wheelRadius;
+		this.widthSlider = widthSlider;
+		this.angleA = angleA;
+		this.angleB = angleB;
+		this.delta = delta;
+		zones = new byte[diameter*diameter];
+		saturation = new float[wheelRadius*wheelRadius + 1];
+		for (int i = 0; i < saturation.length; i++)
+			saturation[i] = (float)(Math.sqrt(i) / wheelRadius);
+		bands = new Band[(diameter + BAND_HEIGHT - 1)/BAND_HEIGHT];
+		for (int i = 0; i < bands.length; i++)
+			bands[i] = new Band(i*BAND_HEIGHT, Math.min(diameter, (i + 1)*BAND_HEIGHT));
+		// the chromatic circle, its border, then the sliders and their border if any
+		int circles = widthSlider == 0 ? 2 : 4;
+		edgeLow = new double[circles];
+		edgeHigh = new double[circles];
+		for (int i = 0; i < circles; i++) {
+			double r = wheelRadius + (i < 2 ? i : i - 1 + widthSlider);
+			double inside = Math.max(0, r - FOOTPRINT), outside = r + FOOTPRINT;
+			edgeLow[i] = inside*inside;
+			edgeHigh[i] = outside*outside;
+		}
+	}
+
+	/**
+	 * Build the geometry of a wheel, computing the bands in parallel on the common fork-join pool
+	 * @param diameter : the width of the image of the wheel
+	 * @param wheelRadius : the radius of the chromatic circle
+	 * @param widthSlider : the width of the sliders
+	 * @param angleA : the angle at which the <em>value</em> slider start
+	 * @param angleB : the angle at which the <em>alpha</em> slider start
+	 * @param delta : the angle that the sliders occupy
+	 * @return the geometry of the wheel
+	 */
+	static WheelGeometry build(int diameter, int wheelRadius, int widthSlider, double angleA, double angleB, double delta){
+		return build(diameter, wheelRadius, widthSlider, angleA, angleB, delta, false);
+	}
+	/**
+	 * Build the geometry of a wheel, computing the bands in parallel on the common fork-join pool
+	 * @param diameter : the width of the image of the wheel
+	 * @param wheelRadius : the radius of the chromatic circle
+	 * @param widthSlider : the width of the sliders, 0 for the chromatic circle and its border alone
+	 * @param angleA : the angle at which the <em>value</em> slider start
+	 * @param angleB : the angle at which the <em>alpha</em> slider start
+	 * @param delta : the angle that the sliders occupy
+	 * @param fast : true to build a fast geometry
+	 * @return the geometry of the wheel
+	 */
+	static WheelGeometry build(int diameter, int wheelRadius, int widthSlider, double angleA, double angleB, double delta, boolean fast){
+		return build(diameter, wheelRadius, widthSlider, angleA, angleB, delta, fast, false);
+	}
+	/**
+	 * Build the geometry of a wheel, computing the bands in parallel on the common fork-join pool
+	 * @param diameter : the width of the image of the wheel
+	 * @param wheelRadius : the radius of the chromatic circle
+	 * @param widthSlider : the width of the sliders, 0 for the chromatic circle and its border alone
+	 * @param angleA : the angle at which the <em>value</em> slider start
+	 * @param angleB : the angle at which the <em>alpha</em> slider start
+	 * @param delta : the angle that the sliders occupy
+	 * @param fast : true to build a fast geometry
+	 * @param antialiased : true to build an antialiased geometry
+	 * @return the geometry of the wheel
+	 */
+	static WheelGeometry build(int diameter, int wheelRadius, int widthSlider, double angleA, double angleB, double delta, boolean fast, boolean antialiased){
+		final WheelGeometry geometry = new WheelGeometry(diameter, wheelRadius, widthSlider, angleA, angleB, delta, fast, antialiased);
+		IntStream.range(0, geometry.bands.length).parallel().forEach(i -> geometry.buildBand(geometry.bands[i]));
+		return geometry;
+	}
+
+	/**
+	 * Check if this geometry describes the given layout
+	 * @return true if the geometry can be reused for that layout
+	 */
+	boolean matches(int diameter, int wheelRadius, int widthSlider, double angleA, double angleB, boolean fast, boolean antialiased){
+		return this.diameter == diameter && this.wheelRadius == wheelRadius && this.widthSlider == widthSlider && this.angleA == angleA && this.angleB == angleB
+				&& this.fast == fast && this.antialiased == antialiased;
+	}
+
+	/**
+	 * Return the memory used by the tables of this geometry
+	 * @return the size of the tables, in bytes
+	 */
+	long bytes(){
+		long bytes = zones.length + 4L*saturation.length;
+		for (Band band : bands)
+			bytes += 8L*band.colorStart.length + (fast ? 8L : 4L)*band.colorCount + 8L*band.staticIndex.length + 20L*band.edgeIndex.length;
+		return bytes;
+	}
+
+	/**
+	 * Classify the rows of a band, then fill its tables run by run
+	 * @param band : the band to build
+	 */
+	private void buildBand(Band band){
+		boolean[] edges = antialiased ? new boolean[(band.to - band.from)*diameter] : null;
+		int colorCount = 0, staticCount = 0, edgeCount = 0;
+		for (int y = band.from; y < band.to; y++){
+			int offset = y*diameter;
+			classifyRow(y, offset);
+			if (edges != null)
+				edgeCount += findEdges(y, edges, (y - band.from)*diameter);
+			for (int x = 0; x < diameter; x++){
+				byte zone = zones[offset + x];
+				if (edges != null && edges[offset - band.from*diameter + x])
+					continue;
+				if (zone == ColorWheel.COLOR_SELECTED)
+					colorCount++;
+				else if (zone != ColorWheel.NOTHING_SELECTED)
+					staticCount++;
+			}
+		}
+		Band edge = new Band(band.from, band.to);
+		sampleEdges(edge, edges, edgeCount);
+		int staticEdges = 0, blendedEdges = 0;
+		for (int i = 0; i < edgeCount; i++)
+			if (edge.edgeCoverage[i] > 0)
+				blendedEdges++;
+			else if (edge.staticColor[i] != 0)
+				staticEdges++;
+
+		staticCount += staticEdges;
+		band.colorStart = new int[band.to - band.from];
+		band.colorEnd = new int[band.to - band.from];
+		band.colorCount = colorCount;
+		band.hue = new float[colorCount];
+		band.staticIndex = new int[staticCount];
+		band.staticColor = new int[staticCount];
+		if (fast)
+			band.weightQT = new int[colorCount];
+		band.edgeIndex = new int[blendedEdges];
+		band.edgeCoverage = new int[blendedEdges];
+		band.edgeStatic = new int[blendedEdges];
+		band.edgeHue = new float[blendedEdges];
+		band.edgeSaturation = new float[blendedEdges];
+
+		int colors = 0, statics = 0;
+		int radius = diameter/2;
+		for (int y = band.from; y < band.to; y++){
+			int offset = y*diameter;
+			int ny = radius - y;
+			int start = 0;
+			while (start < diameter){
+				if (edges != null && edges[offset - band.from*diameter + start]) {
+					start++;
+					continue;
+				}
+				byte zone = zones[offset + start];
+				int end = start + 1;
+				while (end < diameter && zones[offset + end] == zone && (edges == null || !edges[offset - band.from*diameter + end]))
+					end++;
+				switch (zone){
+					case ColorWheel.COLOR_SELECTED:
+						colors = fillColor(band, colors, y, start, end, ny);
+						break;
+					case ColorWheel.VALUE_SELECTED:
+						statics = fillValue(band, statics, offset, start, end, ny);
+						break;
+					case ColorWheel.ALPHA_SELECTED:
+						statics = fillAlpha(band, statics, offset, start, end, ny);
+						break;
+					case ColorWheel.BORDER:
+						statics = fillBorder(band, statics, offset, start, end);
+						break;
+					default:
+						break;
+				}
+				start = end;
+			}
+		}
+		// the static edge pixels join the other static pixels with their blended value, the ones covered by the circle alone stay edge pixels, which are
+		// drawn with the exact color of their center
+		for (int i = 0, blended = 0; i < edgeCount; i++) {
+			int index = edge.edgeIndex[i];
+			if (edge.edgeCoverage[i] > 0) {
+				band.edgeIndex[blended] = index;
+				band.edgeCoverage[blended] = edge.edgeCoverage[i];
+				band.edgeStatic[blended] = edge.edgeStatic[i];
+				band.edgeHue[blended] = edge.edgeHue[i];
+				band.edgeSaturation[blended] = edge.edgeSaturation[i];
+				blended++;
+			} else if (edge.staticColor[i] != 0) {
+				band.staticIndex[statics] = index;
+				band.staticColor[statics] = edge.staticColor[i];
+				statics++;
+			}
+		}
+	}
+
+	/**
+	 * Compute the zone of every pixel of a row, only using <code>atan2</code> in the sliders.</br>
+	 * The square magnitude is updated incrementally along the row
+	 * @param y : the row
+	 * @param offset : the index of the first pixel of the row
+	 */
+	private void classifyRow(int y, int offset){
+		int radius = diameter/2;
+		int ny = radius - y;
+		int innerSqr = wheelRadius*wheelRadius;
+		int borderSqr = (wheelRadius + 1)*(wheelRadius + 1);
+		int outerSqr = widthSlider == 0 ? borderSqr : (wheelRadius + 2 + widthSlider)*(wheelRadius + 2 + widthSlider); // no slider, no outer border
+
+		int sqrMagnitude = radius*radius + ny*ny;
+		for (int x = 0; x < diameter; x++){
+			int nx = x - radius;
+			if (x > 0)
+				sqrMagnitude += 2*nx - 1;
+			if (sqrMagnitude <= innerSqr)
+				zones[offset + x] = ColorWheel.COLOR_SELECTED;
+			else if (sqrMagnitude <= borderSqr)
+				zones[offset + x] = ColorWheel.BORDER;
+			else if (sqrMagnitude <= outerSqr)
+				zones[offset + x] = (byte)ColorWheel.getSelection(sqrMagnitude, wheelRadius, widthSlider, 1, angleA, angleB, Math.atan2(ny, nx));
+			else
+				zones[offset + x] = ColorWheel.NOTHING_SELECTED;
+		}
+	}
+
+	/**
+	 * Mark the pixels of a row that an edge of the wheel may cross: the ones whose center is closer to a circle or to a side of a slider than the corners of
+	 * a pixel are. Only the pixels around the sliders need their angle
+	 * @param y : the row
+	 * @param edges : the marks of the band
+	 * @param offset : the index of the first pixel of the row in the marks
+	 * @return the number of pixels marked
+	 */
+	private int findEdges(int y, boolean[] edges, int offset){
+		int radius = diameter/2;
+		int ny = radius - y;
+		double[] low = edgeLow, high = edgeHigh;
+		double outerSqr = high[high.length - 1];
+		double sliderSqr = widthSlider == 0 ? outerSqr : low[1];
+
+		int count = 0;
+		for (int x = 0; x < diameter; x++){
+			int nx = x - radius;
+			int sqrMagnitude = nx*nx + ny*ny;
+			if (sqrMagnitude >= outerSqr)
+				continue;
+			boolean edge = false;
+			for (int i = 0; i < low.length && !edge; i++)
+				edge = sqrMagnitude > low[i] && sqrMagnitude < high[i];
+			if (!edge && sqrMagnitude > sliderSqr) {
+				double r = Math.sqrt(sqrMagnitude), angle = Math.abs(Math.atan2(ny, nx));
+				edge = crosses(r, angle, angleA) || crosses(r, angle, angleB);
+			}
+			if (edge) {
+				edges[offset + x] = true;
+				count++;
+			}
+		}
+		return count;
+	}
+	/**
+	 * Return if the pixel at a polar position may be crossed by the side of a slider
+	 * @param r : the distance of the pixel to the center
+	 * @param angle : the absolute angle of the pixel
+	 * @param side : the absolute angle of the side
+	 */
+	private static boolean crosses(double r, double angle, double side){
+		double d = Math.abs(angle - side);
+		return d < Math.PI/2 && r*Math.sin(d) < FOOTPRINT;
+	}
+
+	/**
+	 * Supersample the marked pixels of a band
+	 * @param edge : the band receiving the samples of each pixel, its <code>staticColor</code> being the blended color of a pixel not covered by the circle
+	 * @param edges : the marks of the band, null if none
+	 * @param count : the number of pixels marked
+	 */
+	private void sampleEdges(Band edge, boolean[] edges, int count){
+		edge.edgeIndex = new int[count];
+		edge.edgeCoverage = new int[count];
+		edge.edgeStatic = new int[count];
+		edge.staticColor = new int[count];
+		edge.edgeHue = new float[count];
+		edge.edgeSaturation = new float[count];
+		int radius = diameter/2;
+		for (int i = 0, j = 0; j < count; i++)
+			if (edges[i]) {
+				int index = edge.from*diameter + i;
+				sampleEdge(edge, j++, index, index%diameter - radius, radius - index/diameter);
+			}
+	}
+	/**
+	 * Sample a pixel on a regular grid, each sample taking the zone of its own position
+	 */
+	private void sampleEdge(Band edge, int i, int index, int nx, int ny){
+		int coverage = 0, a = 0, r = 0, g = 0, b = 0;
+		double cx = 0, cy = 0;
+		double innerSqr = (double)wheelRadius*wheelRadius;
+		for (int j = 0; j < SUBSAMPLES; j++){
+			double y = ny + 0.5 - (j + 0.5)/SUBSAMPLES;
+			for (int k = 0; k < SUBSAMPLES; k++){
+				double x = nx - 0.5 + (k + 0.5)/SUBSAMPLES;
+				double sqrMagnitude = x*x + y*y;
+				if (sqrMagnitude <= innerSqr) {
+					coverage++;
+					cx += x;
+					cy += y;
+					continue;
+				}
+				int color = sampleColor(sqrMagnitude, x, y);
+				int alpha = color >>> 24;
+				a += alpha;
+				r += alpha*((color >> 16) & 0xFF);
+				g += alpha*((color >> 8) & 0xFF);
+				b += alpha*(color & 0xFF);
+			}
+		}
+		edge.edgeIndex[i] = index;
+		edge.edgeCoverage[i] = coverage;
+		// the rest of the pixel, premultiplied and averaged over all the samples
+		int unit = 255*SAMPLES;
+		edge.edgeStatic[i] = ((a + SAMPLES/2)/SAMPLES << 24) | ((r + unit/2)/unit << 16) | ((g + unit/2)/unit << 8) | (b + unit/2)/unit;
+		if (a > 0)
+			edge.staticColor[i] = ((a + SAMPLES/2)/SAMPLES << 24) | ((r + a/2)/a << 16) | ((g + a/2)/a << 8) | (b + a/2)/a;
+		if (coverage == SAMPLES) {
+			edge.edgeHue[i] = (float)((fast ? atan2(ny, nx) : Math.atan2(ny, nx)) / Math.PI / 2);
+			edge.edgeSaturation[i] = saturation[nx*nx + ny*ny];
+		}
+		else if (coverage > 0) {
+			// the color of the covered part is the one at its centroid
+			cx /= coverage;
+			cy /= coverage;
+			edge.edgeHue[i] = (float)(Math.atan2(cy, cx) / Math.PI / 2);
+			edge.edgeSaturation[i] = wheelRadius > 0 ? (float)Math.min(1, Math.sqrt(cx*cx + cy*cy) / wheelRadius) : 0;
+		}
+	}
+	/**
+	 * Return the color of a sample out of the chromatic circle, with the same zones as <code>classifyRow</code>
+	 * @return the ARGB color of the sample, 0 out of the wheel
+	 */
+	private int sampleColor(double sqrMagnitude, double x, double y){
+		double border = wheelRadius + 1;
+		if (sqrMagnitude <= border*border)
+			return BORDER_COLOR;
+		if (widthSlider == 0)
+			return 0;
+		double angle = Math.atan2(y, x), a = Math.abs(angle);
+		double slider = border + widthSlider;
+		if (sqrMagnitude <= slider*slider)
+			return a >= angleA ? valueColor(angle) : a <= angleB ? alphaColor(angle) : 0;
+		if (sqrMagnitude <= (slider + 1)*(slider + 1) && (a >= angleA || a <= angleB))
+			return BORDER_COLOR;
+		return 0;
+	}
+
+	/**
+	 * Fill the run of the chromatic circle of a row
+	 * @param y : the row
+	 */
+	private int fillColor(Band band, int i, int y, int start, int end, int ny){
+		int radius = diameter/2;
+		band.colorStart[y - band.from] = start;
+		band.colorEnd[y - band.from] = end;
+		for (int x = start; x < end; x++, i++){
+			int nx = x - radius;
+			band.hue[i] = (float)((fast ? atan2(ny, nx) : Math.atan2(ny, nx)) / Math.PI / 2);
+			if (fast)
+				band.weightQT[i] = weightQT(band.hue[i], saturation[nx*nx + ny*ny]);
+		}
+		return i;
+	}
+
+	/**
+	 * Write the index and the <em>saturation</em> of each pixel of the chromatic circle of a band, in the order of its <em>hue</em>
+	 * @param band : the band
+	 * @param index : receives the index of each pixel, at least <code>colorCount</code> long
+	 * @param saturation : receives the <em>saturation</em> of each pixel, at least <code>colorCount</code> long
+	 */
+	void circle(Band band, int[] index, float[] saturation){
+		int radius = diameter/2;
+		for (int y = band.from, i = 0; y < band.to; y++){
+			int ny = radius - y, offset = y*diameter, end = band.colorEnd[y - band.from];
+			for (int x = band.colorStart[y - band.from]; x < end; x++, i++){
+				int nx = x - radius;
+				index[i] = offset + x;
+				saturation[i] = this.saturation[nx*nx + ny*ny];
+			}
+		}
+	}
+
+	/**
+	 * Compute the sextant of the <em>hue</em> of a pixel of the chromatic circle in the high bits and its fixed-point weight <code>p</code> in the low bits,
+	 * the same way <code>Color.HSBtoRGB</code> computes them
+	 */
+	static int sextantP(float hue, float saturation){
+		return (sextant(hue) << 16) | weight(1.0f - saturation);
+	}
+	/**
+	 * Compute the fixed-point weights <code>q</code> and <code>t</code> of a pixel of the chromatic circle, the same way <code>Color.HSBtoRGB</code> computes them
+	 */
+	static int weightQT(float hue, float saturation){
+		float f = (hue < 0 ? hue + 1.0f : hue) * 6.0f - sextant(hue);
+		return (weight(1.0f - saturation * f) << 16) | weight(1.0f - saturation * (1.0f - f));
+	}
+	private static int sextant(float hue){
+		int sextant = (int)((hue < 0 ? hue + 1.0f : hue) * 6.0f); // the hue of a pixel is in ]-0.5, 0.5]
+		return sextant > 5 ? 5 : sextant; // a hue rounded up to 1
+	}
+	private static int weight(float w){
+		return (int)(w * WEIGHT_ONE + 0.5f);
+	}
+
+	/**
+	 * Approximation of <code>Math.atan2</code> by a polynomial on the first octant, within 1.2e-5 radians
+	 * @param y : the ordinate of the point
+	 * @param x : the abscissa of the point
+	 * @return the angle of the point, in [-pi, pi]
+	 */
+	static double atan2(double y, double x){
+		double ax = Math.abs(x), ay = Math.abs(y);
+		if (ax == 0 && ay == 0)
+			return 0;
+		double a = ax < ay ? ax / ay : ay / ax;
+		double s = a*a;
+		double r = ((-0.0464964749*s + 0.15931422)*s - 0.327622764)*s*a + a;
+		if (ay > ax)
+			r = Math.PI/2 - r;
+		if (x < 0)
+			r = Math.PI - r;
+		return y < 0 ? -r : r;
+	}
+
+	private int fillValue(Band band, int i, int offset, int start, int end, int ny){
+		int radius = diameter/2;
+		for (int x = start; x < end; x++, i++){
+			band.staticIndex[i] = offset + x;
+			band.staticColor[i] = valueColor(Math.atan2(ny, x - radius));
+		}
+		return i;
+	}
+	private int valueColor(double angle){
+		int n = (int)(255*ColorWheel.computeValue(angle, angleA, delta))%255;
+		return 0xFF000000 | (n << 16) | (n << 8) | n;
+	}
+
+	private int fillAlpha(Band band, int i, int offset, int start, int end, int ny){
+		int radius = diameter/2;
+		for (int x = start; x < end; x++, i++){
+			band.staticIndex[i] = offset + x;
+			band.staticColor[i] = alphaColor(Math.atan2(ny, x - radius));
+		}
+		return i;
+	}
+	private int alphaColor(double angle){
+		return (int)(ColorWheel.computeAlpha(angle, angleB, delta) * 255) << 24;
+	}
+
+	private int fillBorder(Band band, int i, int offset, int start, int end){
+		for (int x = start; x < end; x++, i++){
+			band.staticIndex[i] = offset + x;
+			band.staticColor[i] = BORDER_COLOR;
+		}
+		return i;
+	}
+}
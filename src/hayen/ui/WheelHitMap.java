@@ -0,0 +1,111 @@
+package hayen.ui;
+
+/**
+ * Hit-test index of a layout of the wheel: the zone and the polar angle of every pixel of the component, so that a mouse event costs a lookup instead of an
+ * <code>atan2</code>.</br>
+ * The pixels are indexed by square tiles, each filled the first time a point in it is looked up, with the same computations as the ones made for a single
+ * point, so the results are exactly the ones of {@link ColorWheel#getSelection(int, int, int, int, double, double, double)}. Points out of the component, as the ones of a
+ * drag leaving it, are computed directly. An index is only valid for the layout it was made for and must be replaced when the layout changes.
+ * This class is not thread-safe and is meant to be used from the Event Dispatch Thread.
+ * @see ColorWheel
+ */
+final class WheelHitMap {
+
+	static final int TILE_BITS = 5, TILE = 1 << TILE_BITS;
+
+	private final int diameter, radius, wheelRadius, widthSlider, borderSize;
+	private final double angleA, angleB;
+	private final int tilesPerRow;
+	/**
+	 * Zones of the pixels of each tile, row after row, null if the tile was never looked up
+	 */
+	private final byte[][] zones;
+	/**
+	 * Polar angles of the pixels of each tile, in the same order as the zones
+	 */
+	private final double[][] angles;
+
+	/**
+	 * Creates an empty index
+	 * @param diameter : the size of the square the wheel is drawn in
+	 * @param radius : the distance between the border of the component and the center of the wheel
+	 * @param wheelRadius : the radius of the chromatic circle
+	 * @param widthSlider : the width of the sliders
+	 * @param borderSize : the width of the borders
+	 * @param angleA : the angle at which the <em>value</em> slider starts
+	 * @param angleB : the angle at which the <em>alpha</em> slider starts
+	 */
+	WheelHitMap(int diameter, int radius, int wheelRadius, int widthSlider, int borderSize, double angleA, double angleB){
+		this.diameter = diameter;
+		this.radius = radius;
+		this.wheelRadius = wheelRadius;
+		this.widthSlider = widthSlider;
+		this.borderSize = borderSize;
+		this.angleA = angleA;
+		this.angleB = angleB;
+		tilesPerRow = (diameter + TILE - 1) >> TILE_BITS;
+		zones = new byte[tilesPerRow*tilesPerRow][];
+		angles = new double[tilesPerRow*tilesPerRow][];
+	}
+
+	/**
+	 * Return if this index was made for a layout
+	 */
+	boolean matches(int diameter, int radius, int wheelRadius, int widthSlider, int borderSize, double angleA, double angleB){
+		return this.diameter == diameter && this.radius == radius && this.wheelRadius == wheelRadius && this.widthSlider == widthSlider
+				&& this.borderSize == borderSize && this.angleA == angleA && this.angleB == angleB;
+	}
+
+	/**
+	 * Return the zone of the wheel under a point
+	 * @param x : the abscissa of the point in the component
+	 * @param y : the ordinate of the point in the component
+	 * @return one of the zones of {@link ColorWheel#getSelection(int, int, int, int, double, double, double)}
+	 */
+	int zone(int x, int y){
+		int t = tile(x, y);
+		if (t < 0) {
+			int nx = x - radius, ny = radius - y;
+			return ColorWheel.getSelection(nx*nx + ny*ny, wheelRadius, widthSlider, borderSize, angleA, angleB, Math.atan2(ny, nx));
+		}
+		return zones[t][((y & (TILE - 1)) << TILE_BITS) | (x & (TILE - 1))];
+	}
+	/**
+	 * Return the polar angle of a point around the center of the wheel
+	 * @param x : the abscissa of the point in the component
+	 * @param y : the ordinate of the point in the component
+	 * @return the angle in ]-PI, PI], counterclockwise from the right
+	 */
+	double angle(int x, int y){
+		int t = tile(x, y);
+		if (t < 0)
+			return Math.atan2(radius - y, x - radius);
+		return angles[t][((y & (TILE - 1)) << TILE_BITS) | (x & (TILE - 1))];
+	}
+
+	/**
+	 * Return the index of the tile of a point, filling it if needed, or -1 if the point is out of the component
+	 */
+	private int tile(int x, int y){
+		if (x < 0 || y < 0 || x >= diameter || y >= diameter)
+			return -1;
+		int t = (y >> TILE_BITS)*tilesPerRow + (x >> TILE_BITS);
+		if (zones[t] == null)
+			fill(t, (x >> TILE_BITS) << TILE_BITS, (y >> TILE_BITS) << TILE_BITS);
+		return t;
+	}
+	private void fill(int t, int x0, int y0){
+		byte[] zone = new byte[TILE*TILE];
+		double[] angle = new double[TILE*TILE];
+		for (int j = 0, i = 0; j < TILE; j++) {
+			int ny = radius - (y0 + j);
+			for (int k = 0; k < TILE; k++, i++) {
+				int nx = x0 + k - radius;
+				angle[i] = Math.atan2(ny, nx);
+				zone[i] = (byte)ColorWheel.getSelection(nx*nx + ny*ny, wheelRadius, widthSlider, borderSize, angleA, angleB, angle[i]);
+			}
+		}
+		angles[t] = angle;
+		zones[t] = zone;
+	}
+}
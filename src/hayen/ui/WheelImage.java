@@ -0,0 +1,208 @@
+package hayen.ui;
+
+import java.awt.Image;
+import java.awt.geom.AffineTransform;
+import java.awt.image.AbstractMultiResolutionImage;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Image of the wheel, or of the shade mask, of a <code>ColorWheel</code>, at every device scale it is painted at.</br>
+ * Its size is the logical size of the wheel. Each resolution variant is only rendered the first time something is painted at its scale, so a wheel shown
+ * on a 200% display is rendered at twice its size without making the wheels of other displays any more expensive. Scales up to 1 use the logical size,
+ * higher ones are rounded up to the next quarter, up to 4. The variants and their geometries are taken from the <code>WheelImageCache</code>, and a
+ * variant no longer painted is given back to it, to be evicted when the cache needs the memory or taken back if it is painted again.</br>
+ * A change of <em>value</em> only recolors the variants when they are painted.
+ * @see hayen.ui.ColorWheel
+ */
+final class WheelImage extends AbstractMultiResolutionImage {
+
+	/**
+	 * Steps of the device scales with a variant of their own, per unit
+	 */
+	static final int STEPS_PER_UNIT = 4;
+	static final int MAX_STEPS = 4*STEPS_PER_UNIT;
+
+	private final WheelImageCache.Key layout;
+	private final int kind;
+	private float value;
+	private final Variant[] variants = new Variant[MAX_STEPS + 1];
+
+	/**
+	 * Image of one scale, and the geometry it was rendered with if it had to be
+	 */
+	private static final class Variant {
+		final WheelImageCache.Key layout;
+		WheelImageCache.Entry<WheelGeometry> geometry;
+		WheelImageCache.Entry<BufferedImage> image;
+
+		Variant(WheelImageCache.Key layout){ this.layout = layout; }
+
+		void release(){
+			WheelImageCache.release(image);
+			WheelImageCache.release(geometry);
+			image = null;
+			geometry = null;
+		}
+		void drop(){
+			WheelImageCache.Key key = image != null ? image.key : null;
+			release();
+			if (key != null)
+				WheelImageCache.discard(key);
+			WheelImageCache.discard(layout);
+		}
+	}
+
+	/**
+	 * @param layout : the geometry key of the wheel at its logical size
+	 * @param kind : <code>WheelImageCache.WHEEL</code> or <code>WheelImageCache.SHADE</code>
+	 * @param value : the <em>value</em> of the chromatic circle, only meaningful for a <code>WHEEL</code>
+	 */
+	WheelImage(WheelImageCache.Key layout, int kind, float value){
+		this.layout = layout;
+		this.kind = kind;
+		this.value = value;
+	}
+
+	/**
+	 * Return the scale of the device a graphics draws on, or at least the one its transform gives
+	 * @param transform : the transform of the graphics
+	 * @return the scale, the largest of the two axes
+	 */
+	static double deviceScale(AffineTransform transform){
+		return Math.max(Math.hypot(transform.getScaleX(), transform.getShearY()), Math.hypot(transform.getShearX(), transform.getScaleY()));
+	}
+	/**
+	 * Return the layout of a wheel at a given scale
+	 * @param layout : the geometry key of the wheel at its logical size
+	 * @param scale : the device scale
+	 * @return the geometry key of the variant for this scale
+	 */
+	static WheelImageCache.Key scaled(WheelImageCache.Key layout, double scale){
+		int steps = steps(scale);
+		if (steps == STEPS_PER_UNIT)
+			return layout;
+		double s = steps/(double)STEPS_PER_UNIT;
+		return new WheelImageCache.Key(WheelImageCache.GEOMETRY, (int)Math.round(layout.diameter*s), (int)Math.round(layout.wheelRadius*s),
+				(int)Math.round(layout.widthSlider*s), layout.angleA, layout.angleB, 0, layout.fast, layout.antialiased, layout.space);
+	}
+	private static int steps(double scale){
+		if (!(scale > 1))
+			return STEPS_PER_UNIT;
+		return Math.min(MAX_STEPS, (int)Math.ceil(scale*STEPS_PER_UNIT - 1e-6));
+	}
+
+	/**
+	 * Return if this image is for the given layout
+	 */
+	boolean matches(int diameter, int wheelRadius, int widthSlider, double angleA, double angleB, boolean fast, boolean antialiased){
+		return layout.matches(diameter, wheelRadius, widthSlider, angleA, angleB, fast, antialiased);
+	}
+
+	float getValue(){ return value; }
+	/**
+	 * Change the <em>value</em> of the chromatic circle. The variants are recolored the next time they are asked for
+	 * @param value : the new <em>value</em>
+	 */
+	synchronized void setValue(float value){
+		if (kind == WheelImageCache.WHEEL)
+			this.value = value;
+	}
+
+	/**
+	 * Return the variant for a device scale, rendering or recoloring it if needed
+	 * @param scale : the device scale
+	 * @return the image of the wheel at this scale, at the current <em>value</em>
+	 */
+	synchronized BufferedImage getVariant(double scale){
+		int steps = steps(scale);
+		Variant variant = variants[steps];
+		if (variant == null)
+			variant = variants[steps] = new Variant(scaled(layout, scale));
+		WheelImageCache.Key key = variant.layout.with(kind, value);
+		if (variant.image == null) {
+			variant.image = WheelImageCache.lookup(key);
+			if (variant.image == null)
+				variant.image = WheelImageCache.image(key, geometry(variant));
+		}
+		else if (!variant.image.key.equals(key)) {
+			WheelImageCache.Entry<BufferedImage> entry = WheelImageCache.lookup(key);
+			if (entry != null)
+				WheelImageCache.release(variant.image);
+			else
+				entry = WheelImageCache.recolor(variant.image, geometry(variant), value);
+			variant.image = entry;
+		}
+		return variant.image.value;
+	}
+	private static WheelGeometry geometry(Variant variant){
+		if (variant.geometry == null)
+			variant.geometry = WheelImageCache.geometry(variant.layout);
+		return variant.geometry.value;
+	}
+
+	/**
+	 * Use images rendered elsewhere as the variant of a scale
+	 * @param scale : the device scale they were rendered for
+	 * @param geometry : the geometry they were rendered with, can be null. The reference is handed over to this image
+	 * @param image : the image of the variant. The reference is handed over to this image
+	 */
+	synchronized void install(double scale, WheelImageCache.Entry<WheelGeometry> geometry, WheelImageCache.Entry<BufferedImage> image){
+		int steps = steps(scale);
+		if (variants[steps] != null)
+			variants[steps].release();
+		Variant variant = variants[steps] = new Variant(scaled(layout, scale));
+		variant.geometry = geometry;
+		variant.image = image;
+	}
+
+	/**
+	 * Give back to the cache every variant but the one of a scale
+	 * @param scale : the device scale still painted
+	 */
+	synchronized void retainOnly(double scale){
+		int steps = steps(scale);
+		for (int i = 0; i < variants.length; i++)
+			if (i != steps && variants[i] != null && variants[i].image != null)
+				variants[i].release();
+	}
+	/**
+	 * Give back every variant to the cache
+	 */
+	synchronized void release(){
+		for (Variant variant : variants)
+			if (variant != null)
+				variant.release();
+	}
+	/**
+	 * Give back every variant to the cache, removing them and their geometry if no other wheel uses them, so that their memory is freed right away
+	 */
+	synchronized void drop(){
+		for (Variant variant : variants)
+			if (variant != null)
+				variant.drop();
+	}
+
+	@Override
+	public int getWidth(ImageObserver observer){ return layout.diameter; }
+	@Override
+	public int getHeight(ImageObserver observer){ return layout.diameter; }
+	@Override
+	protected Image getBaseImage(){ return getVariant(1); }
+	@Override
+	public Image getResolutionVariant(double destImageWidth, double destImageHeight){
+		return getVariant(Math.max(destImageWidth, destImageHeight)/layout.diameter);
+	}
+	@Override
+	public synchronized List<Image> getResolutionVariants(){
+		ArrayList<Image> images = new ArrayList<Image>();
+		for (Variant variant : variants)
+			if (variant != null && variant.image != null)
+				images.add(variant.image.value);
+		if (images.isEmpty())
+			images.add(getBaseImage());
+		return images;
+	}
+}
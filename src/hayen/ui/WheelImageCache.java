@@ -0,0 +1,405 @@
+package hayen.ui;
+
+import hayen.color.ColorSpace;
+
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache of the images and geometries of the <code>ColorWheel</code>s.</br>
+ * Wheels sharing the same diameter, slider width, border, slider angle, <em>value</em>, color space and rendering mode share the same image, rendered once. Entries are reference counted:
+ * an entry still used by a wheel is never evicted, while unused entries are evicted in least recently used order as soon as the cache goes over its memory budget.</br>
+ * When a <code>WheelAtlas</code> is set, the images it holds are taken from it instead of being rendered. Their pixels stay in the mapped file, so they only count
+ * in the memory budget for a small fixed amount, which still lets the unused ones be evicted.
+ * @see hayen.ui.ColorWheel
+ */
+public final class WheelImageCache {
+
+	/**
+	 * Default memory budget of the cache, in bytes
+	 */
+	public static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+
+	static final int GEOMETRY = 0;
+	static final int WHEEL = 1;
+	static final int SHADE = 2;
+
+	/**
+	 * Memory counted for an image of the atlas: its pixels stay in the file, only its raster is in the heap
+	 */
+	static final long MAPPED_BYTES = 4096;
+
+	private static final LinkedHashMap<Key, Entry<?>> entries = new LinkedHashMap<Key, Entry<?>>(16, 0.75f, true);
+	private static long memoryBudget = DEFAULT_MEMORY_BUDGET;
+	private static long memoryUsed, hits, misses, evictions;
+	private static WheelAtlas atlas;
+
+	private WheelImageCache(){}
+
+	/**
+	 * Render parameters identifying an entry
+	 */
+	static final class Key {
+		final int kind, diameter, wheelRadius, widthSlider;
+		final double angleA, angleB;
+		final float value;
+		final boolean fast;
+		/**
+		 * True for the entries of the antialiased rendering mode
+		 */
+		final boolean antialiased;
+		/**
+		 * Color space of the chromatic circle, ignored by the geometries which do not depend on it
+		 */
+		final ColorSpace space;
+
+		/**
+		 * @param kind : what the entry holds (<code>GEOMETRY</code>, <code>WHEEL</code> or <code>SHADE</code>)
+		 * @param diameter : the width of the image of the wheel
+		 * @param wheelRadius : the radius of the chromatic circle
+		 * @param widthSlider : the width of the sliders
+		 * @param angleA : the angle at which the <em>value</em> slider start
+		 * @param angleB : the angle at which the <em>alpha</em> slider start
+		 * @param value : the <em>value</em> of the chromatic circle, only meaningful for a <code>WHEEL</code>
+		 * @param fast : true for the entries of the fast rendering mode
+		 */
+		Key(int kind, int diameter, int wheelRadius, int widthSlider, double angleA, double angleB, float value, boolean fast){
+			this(kind, diameter, wheelRadius, widthSlider, angleA, angleB, value, fast, ColorSpace.HSB);
+		}
+		/**
+		 * @param kind : what the entry holds (<code>GEOMETRY</code>, <code>WHEEL</code> or <code>SHADE</code>)
+		 * @param diameter : the width of the image of the wheel
+		 * @param wheelRadius : the radius of the chromatic circle
+		 * @param widthSlider : the width of the sliders
+		 * @param angleA : the angle at which the <em>value</em> slider start
+		 * @param angleB : the angle at which the <em>alpha</em> slider start
+		 * @param value : the <em>value</em> of the chromatic circle, only meaningful for a <code>WHEEL</code>
+		 * @param fast : true for the entries of the fast rendering mode
+		 * @param space : the color space of the chromatic circle
+		 */
+		Key(int kind, int diameter, int wheelRadius, int widthSlider, double angleA, double angleB, float value, boolean fast, ColorSpace space){
+			this(kind, diameter, wheelRadius, widthSlider, angleA, angleB, value, fast, false, space);
+		}
+		/**
+		 * @param kind : what the entry holds (<code>GEOMETRY</code>, <code>WHEEL</code> or <code>SHADE</code>)
+		 * @param diameter : the width of the image of the wheel
+		 * @param wheelRadius : the radius of the chromatic circle
+		 * @param widthSlider : the width of the sliders
+		 * @param angleA : the angle at which the <em>value</em> slider start
+		 * @param angleB : the angle at which the <em>alpha</em> slider start
+		 * @param value : the <em>value</em> of the chromatic circle, only meaningful for a <code>WHEEL</code>
+		 * @param fast : true for the entries of the fast rendering mode
+		 * @param antialiased : true for the entries of the antialiased rendering mode
+		 * @param space : the color space of the chromatic circle
+		 */
+		Key(int kind, int diameter, int wheelRadius, int widthSlider, double angleA, double angleB, float value, boolean fast, boolean antialiased, ColorSpace space){
+			this.kind = kind;
+			this.antialiased = antialiased;
+			this.space = space;
+			this.fast = fast;
+			this.diameter = diameter;
+			this.wheelRadius = wheelRadius;
+			this.widthSlider = widthSlider;
+			this.angleA = angleA;
+			this.angleB = angleB;
+			this.value = kind == WHEEL ? value : 0;
+		}
+
+		/**
+		 * Return the angle covered by the <em>value</em> slider, the way <code>ColorWheel</code> derives it from <code>angleA</code>
+		 */
+		double delta(){
+			return 2*(Math.PI - angleA);
+		}
+
+		/**
+		 * Return the key of another kind of entry for the same layout
+		 */
+		Key with(int kind, float value){
+			return new Key(kind, diameter, wheelRadius, widthSlider, angleA, angleB, value, fast, antialiased, space);
+		}
+
+		@Override
+		public boolean equals(Object o){
+			if (!(o instanceof Key))
+				return false;
+			Key k = (Key)o;
+			return kind == k.kind && diameter == k.diameter && wheelRadius == k.wheelRadius && widthSlider == k.widthSlider
+					&& Double.compare(angleA, k.angleA) == 0 && Double.compare(angleB, k.angleB) == 0 && Float.compare(value, k.value) == 0
+					&& fast == k.fast && antialiased == k.antialiased && (kind == GEOMETRY || space == k.space);
+		}
+		@Override
+		public int hashCode(){
+			int h = kind;
+			h = 31*h + diameter;
+			h = 31*h + wheelRadius;
+			h = 31*h + widthSlider;
+			h = 31*h + Double.hashCode(angleA);
+			h = 31*h + Double.hashCode(angleB);
+			h = 31*h + Float.hashCode(value);
+			h = 31*h + Boolean.hashCode(fast);
+			return 31*h + Boolean.hashCode(antialiased);
+		}
+
+		/**
+		 * Return if this key is for the given layout, whatever its kind and <em>value</em>
+		 */
+		boolean matches(int diameter, int wheelRadius, int widthSlider, double angleA, double angleB, boolean fast, boolean antialiased){
+			return this.diameter == diameter && this.wheelRadius == wheelRadius && this.widthSlider == widthSlider
+					&& Double.compare(this.angleA, angleA) == 0 && Double.compare(this.angleB, angleB) == 0 && this.fast == fast && this.antialiased == antialiased;
+		}
+	}
+
+	/**
+	 * A cached object and the number of wheels currently using it
+	 */
+	static final class Entry<T> {
+		final T value;
+		final long bytes;
+		/**
+		 * True if the value is a read-only image of the atlas
+		 */
+		final boolean mapped;
+		Key key;
+		int references;
+
+		private Entry(Key key, T value, long bytes, boolean mapped){
+			this.key = key;
+			this.value = value;
+			this.bytes = bytes;
+			this.mapped = mapped;
+		}
+	}
+
+	/**
+	 * Return the geometry of a layout, building it on a miss. The caller must <code>release</code> the entry once it stops using it
+	 * @param key : the key of the geometry
+	 * @return the entry holding the geometry
+	 */
+	static Entry<WheelGeometry> geometry(Key key){
+		Entry<WheelGeometry> entry = acquire(key);
+		if (entry != null)
+			return entry;
+		WheelGeometry geometry = WheelGeometry.build(key.diameter, key.wheelRadius, key.widthSlider, key.angleA, key.angleB, key.delta(), key.fast,
+				key.antialiased);
+		return put(key, geometry, geometry.bytes());
+	}
+	/**
+	 * Return the image of a wheel, rendering it on a miss. The caller must <code>release</code> the entry once it stops using it
+	 * @param key : the key of the image, of kind <code>WHEEL</code> or <code>SHADE</code>
+	 * @param geometry : the geometry of the layout of the key
+	 * @return the entry holding the image
+	 */
+	static Entry<BufferedImage> image(Key key, WheelGeometry geometry){
+		Entry<BufferedImage> entry = lookup(key);
+		if (entry != null)
+			return entry;
+		BufferedImage image = new BufferedImage(key.diameter, key.diameter, BufferedImage.TYPE_INT_ARGB);
+		if (key.kind == SHADE)
+			WheelRenderer.renderShade(image, geometry);
+		else
+			WheelRenderer.render(image, geometry, key.space, key.value);
+		return put(key, image, 4L*key.diameter*key.diameter);
+	}
+	/**
+	 * Return the image of a wheel if it is cached or in the atlas, without ever rendering it. The caller must <code>release</code> the entry once it stops using it
+	 * @param key : the key of the image, of kind <code>WHEEL</code> or <code>SHADE</code>
+	 * @return the entry holding the image, or null if it has to be rendered
+	 */
+	static synchronized Entry<BufferedImage> lookup(Key key){
+		Entry<BufferedImage> entry = acquire(key);
+		if (entry != null || atlas == null)
+			return entry;
+		BufferedImage image = atlas.image(key);
+		if (image == null)
+			return null;
+		hits++;
+		entry = new Entry<BufferedImage>(key, image, MAPPED_BYTES, true);
+		entry.references++;
+		entries.put(key, entry);
+		memoryUsed += MAPPED_BYTES;
+		evict();
+		return entry;
+	}
+	/**
+	 * Return the image of the same wheel at another <em>value</em>.</br>
+	 * If nobody else uses the current image and it does not come from the atlas, it is recolored in place instead of rendering a new one
+	 * @param current : the entry of the image currently used, released by this call
+	 * @param geometry : the geometry of the wheel
+	 * @param value : the new <em>value</em>
+	 * @return the entry holding the image at the new <em>value</em>
+	 */
+	static Entry<BufferedImage> recolor(Entry<BufferedImage> current, WheelGeometry geometry, float value){
+		Key key = current.key.with(WHEEL, value);
+		if (detach(current, key)) {
+			WheelRenderer.recolor(current.value, geometry, key.space, value);
+			attach(current, key);
+			return current;
+		}
+		release(current);
+		return image(key, geometry);
+	}
+
+	/**
+	 * Take one more reference on an entry already obtained from the cache
+	 * @param entry : the entry
+	 */
+	static synchronized void retain(Entry<?> entry){
+		entry.references++;
+	}
+	/**
+	 * Give back an entry obtained from the cache, allowing it to be evicted
+	 * @param entry : the entry, can be null
+	 */
+	static synchronized void release(Entry<?> entry){
+		if (entry == null || entry.references == 0)
+			return;
+		entry.references--;
+		evict();
+	}
+
+	/**
+	 * Remove the entry of a key if no wheel uses it, freeing its memory right away instead of when the cache needs it
+	 * @param key : the key of the entry
+	 */
+	static synchronized void discard(Key key){
+		Entry<?> entry = entries.get(key);
+		if (entry == null || entry.references > 0)
+			return;
+		entries.remove(key);
+		memoryUsed -= entry.bytes;
+		evictions++;
+		if (entry.value instanceof BufferedImage)
+			((BufferedImage)entry.value).flush();
+	}
+	/**
+	 * Take an entry used by a single wheel out of the cache so that it can be modified
+	 * @return true if the entry was taken out
+	 */
+	private static synchronized boolean detach(Entry<?> entry, Key key){
+		if (entry.mapped || entry.references != 1 || entries.containsKey(key) || entries.get(entry.key) != entry)
+			return false;
+		entries.remove(entry.key);
+		memoryUsed -= entry.bytes;
+		misses++;
+		return true;
+	}
+	/**
+	 * Put back a detached entry under its new key
+	 */
+	private static synchronized void attach(Entry<?> entry, Key key){
+		entry.key = key;
+		if (!entries.containsKey(key)) {
+			entries.put(key, entry);
+			memoryUsed += entry.bytes;
+			evict();
+		}
+	}
+	@SuppressWarnings("unchecked")
+	private static synchronized <T> Entry<T> acquire(Key key){
+		Entry<T> entry = (Entry<T>)entries.get(key);
+		if (entry == null)
+			return null;
+		hits++;
+		entry.references++;
+		return entry;
+	}
+	@SuppressWarnings("unchecked")
+	private static synchronized <T> Entry<T> put(Key key, T value, long bytes){
+		misses++;
+		Entry<T> entry = (Entry<T>)entries.get(key);
+		if (entry == null) { // nobody rendered it in the meantime
+			entry = new Entry<T>(key, value, bytes, false);
+			entries.put(key, entry);
+			memoryUsed += bytes;
+		}
+		entry.references++;
+		evict();
+		return entry;
+	}
+	/**
+	 * Evict the least recently used entries that are not in use until the cache fits in its budget
+	 */
+	private static void evict(){
+		Iterator<Entry<?>> it = entries.values().iterator();
+		while (memoryUsed > memoryBudget && it.hasNext()) {
+			Entry<?> entry = it.next();
+			if (entry.references > 0)
+				continue;
+			it.remove();
+			memoryUsed -= entry.bytes;
+			evictions++;
+			if (entry.value instanceof BufferedImage)
+				((BufferedImage)entry.value).flush();
+		}
+	}
+
+	/**
+	 * Set the atlas from which the wheels it holds are taken instead of being rendered.</br>
+	 * The images already taken from the previous atlas are kept until they are evicted
+	 * @param atlas : the atlas, null to render every wheel
+	 * @see hayen.ui.WheelAtlasBuilder
+	 */
+	public static synchronized void setAtlas(WheelAtlas atlas){
+		WheelImageCache.atlas = atlas;
+	}
+	/**
+	 * Return the atlas from which the wheels are taken
+	 * @return the atlas, null if there is none
+	 */
+	public static synchronized WheelAtlas getAtlas(){ return atlas; }
+	/**
+	 * Set the memory the cache may use, in bytes. Entries in use are kept even if they exceed it
+	 * @param bytes : the new memory budget
+	 */
+	public static synchronized void setMemoryBudget(long bytes){
+		memoryBudget = Math.max(0, bytes);
+		evict();
+	}
+	/**
+	 * Return the memory the cache may use, in bytes
+	 * @return the memory budget
+	 */
+	public static synchronized long getMemoryBudget(){ return memoryBudget; }
+	/**
+	 * Return the memory currently used by the cached images and geometries, in bytes
+	 * @return the memory used
+	 */
+	public static synchronized long getMemoryUsed(){ return memoryUsed; }
+	/**
+	 * Return the number of entries in the cache
+	 * @return the number of entries
+	 */
+	public static synchronized int getEntryCount(){ return entries.size(); }
+	/**
+	 * Return the number of requests served from the cache or the atlas
+	 * @return the number of hits
+	 */
+	public static synchronized long getHits(){ return hits; }
+	/**
+	 * Return the number of requests that had to render or build their entry
+	 * @return the number of misses
+	 */
+	public static synchronized long getMisses(){ return misses; }
+	/**
+	 * Return the number of entries evicted to fit in the memory budget
+	 * @return the number of evictions
+	 */
+	public static synchronized long getEvictions(){ return evictions; }
+	/**
+	 * Drop every entry that is not in use and reset the counters
+	 */
+	public static synchronized void clear(){
+		Iterator<Map.Entry<Key, Entry<?>>> it = entries.entrySet().iterator();
+		while (it.hasNext()) {
+			Entry<?> entry = it.next().getValue();
+			if (entry.references == 0) {
+				it.remove();
+				memoryUsed -= entry.bytes;
+			}
+		}
+		hits = misses = evictions = 0;
+	}
+}
@@ -0,0 +1,424 @@
+package hayen.ui;
+
+import hayen.event.ColorChangeDispatcher;
+import hayen.event.ColorChangeListener;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide instrumentation of the <code>ColorWheel</code>s: how often and how long their wheel is regenerated, by cause, how long painting them takes,
+ * how many colors they send and how long each <code>ColorChangeListener</code> takes to handle them.</br>
+ * Disabled by default, in which case each instrumented call only costs the read of a flag. It can be enabled with <code>setEnabled</code>, or with the
+ * <code>hayen.ui.metrics</code> system property set to <code>true</code>, which also registers the metrics as the <code>hayen.ui:type=WheelMetrics</code>
+ * MBean. Counters are <code>LongAdder</code>s and durations go in lock-free histograms; only finding the histogram of a listener takes a short lock.
+ * The listeners are only weakly referenced, and at most <code>MAX_LISTENERS</code> of them are followed separately until the next reset.
+ * @see hayen.ui.WheelMetricsMXBean
+ */
+public final class WheelMetrics {
+
+	/**
+	 * Name under which the MBean is registered
+	 */
+	public static final String OBJECT_NAME = "hayen.ui:type=WheelMetrics";
+	/**
+	 * Number of listeners whose durations are recorded separately, the durations of the others being recorded together
+	 */
+	public static final int MAX_LISTENERS = 256;
+	/**
+	 * Name under which the durations of the listeners beyond <code>MAX_LISTENERS</code> are reported
+	 */
+	public static final String OTHER_LISTENERS = "other listeners";
+
+	/**
+	 * Reason why the wheel of a <code>ColorWheel</code> had to be generated again
+	 */
+	public enum Cause {
+		/**
+		 * First paint of the wheel, or first paint after it was removed from its parent
+		 */
+		INITIAL,
+		/**
+		 * The component was resized
+		 */
+		RESIZE,
+		/**
+		 * The selected <em>value</em> changed, so the chromatic circle is recolored
+		 */
+		VALUE,
+		/**
+		 * The slider angle changed
+		 */
+		SLIDER_ANGLE,
+		/**
+		 * Another setting of the wheel changed: slider width, border size, <em>value</em> overlay or rendering mode
+		 */
+		SETTINGS
+	}
+
+	private static volatile boolean enabled;
+	private static volatile Registry registry = new Registry();
+
+	static {
+		if (Boolean.getBoolean("hayen.ui.metrics")) {
+			setEnabled(true);
+			try {
+				registerMBean();
+			} catch (RuntimeException e) { // registered by another class loader, or not allowed: the metrics are still recorded
+			}
+		}
+	}
+
+	private WheelMetrics(){}
+
+	/**
+	 * Everything recorded since the last reset
+	 */
+	private static final class Registry {
+		final long start = System.nanoTime();
+		final LatencyHistogram[] regenerations = new LatencyHistogram[Cause.values().length];
+		final LatencyHistogram paints = new LatencyHistogram();
+		final LongAdder colorChanges = new LongAdder(), notifications = new LongAdder();
+		final WeakHashMap<ColorChangeListener, LatencyHistogram> listeners = new WeakHashMap<ColorChangeListener, LatencyHistogram>();
+		final LatencyHistogram otherListeners = new LatencyHistogram();
+
+		Registry(){
+			for (int i = 0; i < regenerations.length; i++)
+				regenerations[i] = new LatencyHistogram();
+		}
+	}
+
+	/**
+	 * Durations recorded by a histogram
+	 */
+	public static final class Latency {
+		private final long[] counts;
+		private final long count, total, max;
+
+		Latency(long[] counts, long total, long max){
+			this.counts = counts;
+			this.total = total;
+			this.max = max;
+			long count = 0;
+			for (long c : counts)
+				count += c;
+			this.count = count;
+		}
+
+		/**
+		 * Return the number of durations recorded
+		 * @return the number of durations
+		 */
+		public long getCount(){ return count; }
+		/**
+		 * Return the sum of the durations recorded, in nanoseconds
+		 * @return the total duration
+		 */
+		public long getTotalNanos(){ return total; }
+		/**
+		 * Return the mean duration, in milliseconds
+		 * @return the mean duration, 0 if none was recorded
+		 */
+		public double getMeanMillis(){ return count == 0 ? 0 : total/(double)count/1e6; }
+		/**
+		 * Return the longest duration, in milliseconds
+		 * @return the longest duration, 0 if none was recorded
+		 */
+		public double getMaxMillis(){ return max/1e6; }
+		/**
+		 * Return a duration that the given proportion of the durations recorded did not exceed, in milliseconds.</br>
+		 * The result is the upper bound of the bucket holding that duration, so it may be up to 25% above it, but never above the longest duration
+		 * @param percentile : the proportion of the durations, in [0, 100]
+		 * @return the duration, 0 if none was recorded
+		 */
+		public double getPercentileMillis(double percentile){
+			if (count == 0)
+				return 0;
+			long rank = (long)Math.ceil(count*Math.max(0, Math.min(100, percentile))/100);
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= rank && counts[i] > 0)
+					return Math.min(LatencyHistogram.upperBound(i), max)/1e6;
+			}
+			return max/1e6;
+		}
+
+		/**
+		 * Return the durations of this histogram and of another one together
+		 */
+		Latency merge(Latency other){
+			long[] counts = this.counts.clone();
+			for (int i = 0; i < counts.length; i++)
+				counts[i] += other.counts[i];
+			return new Latency(counts, total + other.total, Math.max(max, other.max));
+		}
+
+		@Override
+		public String toString(){
+			return String.format("%d, mean %.3f ms, p99 %.3f ms, max %.3f ms", count, getMeanMillis(), getPercentileMillis(99), getMaxMillis());
+		}
+	}
+
+	/**
+	 * Metrics recorded between the last reset and the moment the snapshot was taken
+	 */
+	public static final class Snapshot {
+		private final long elapsed, colorChanges, notifications;
+		private final EnumMap<Cause, Latency> regenerations = new EnumMap<Cause, Latency>(Cause.class);
+		private final Latency paints;
+		private final Map<String, Latency> listeners;
+
+		private Snapshot(Registry registry){
+			elapsed = System.nanoTime() - registry.start;
+			for (Cause cause : Cause.values())
+				regenerations.put(cause, registry.regenerations[cause.ordinal()].snapshot());
+			paints = registry.paints.snapshot();
+			colorChanges = registry.colorChanges.sum();
+			notifications = registry.notifications.sum();
+			TreeMap<String, Latency> listeners = new TreeMap<String, Latency>();
+			synchronized (registry.listeners) {
+				for (Map.Entry<ColorChangeListener, LatencyHistogram> entry : registry.listeners.entrySet())
+					listeners.merge(name(entry.getKey()), entry.getValue().snapshot(), Latency::merge);
+			}
+			Latency others = registry.otherListeners.snapshot();
+			if (others.getCount() > 0)
+				listeners.put(OTHER_LISTENERS, others);
+			this.listeners = Collections.unmodifiableMap(listeners);
+		}
+
+		/**
+		 * Return the time covered by this snapshot, since the metrics were last reset, in seconds
+		 * @return the time covered
+		 */
+		public double getElapsedSeconds(){ return elapsed/1e9; }
+		/**
+		 * Return the durations of the regenerations of the wheels, whatever their cause
+		 * @return the regenerations
+		 */
+		public Latency getRegenerations(){
+			Latency all = null;
+			for (Latency latency : regenerations.values())
+				all = all == null ? latency : all.merge(latency);
+			return all;
+		}
+		/**
+		 * Return the durations of the regenerations of the wheels that had a given cause
+		 * @param cause : the cause of the regenerations
+		 * @return the regenerations
+		 */
+		public Latency getRegenerations(Cause cause){ return regenerations.get(cause); }
+		/**
+		 * Return the durations of the calls to <code>ColorWheel.paint</code>
+		 * @return the paints
+		 */
+		public Latency getPaints(){ return paints; }
+		/**
+		 * Return the number of times the color selected on a wheel changed, each one firing a <code>ColorChangeEvent</code>
+		 * @return the number of color changes
+		 */
+		public long getColorChanges(){ return colorChanges; }
+		/**
+		 * Return the number of <code>ColorChangeEvent</code>s handled by a listener, counting one per listener notified. The dispatcher may merge color
+		 * changes, in which case the listeners do not see all of them
+		 * @return the number of listener notifications
+		 */
+		public long getNotifications(){ return notifications; }
+		/**
+		 * Return the mean number of color changes per second over the time covered
+		 * @return the rate of color changes
+		 */
+		public double getEventsPerSecond(){ return elapsed <= 0 ? 0 : colorChanges/(elapsed/1e9); }
+		/**
+		 * Return the time taken by the listeners still reachable to handle a <code>ColorChangeEvent</code>, by listener
+		 * @return the durations, by name of the class of the listener followed by its identity hash code, and under <code>OTHER_LISTENERS</code> for the
+		 * listeners beyond <code>MAX_LISTENERS</code>
+		 */
+		public Map<String, Latency> getListeners(){ return listeners; }
+
+		@Override
+		public String toString(){
+			StringBuilder sb = new StringBuilder();
+			sb.append(String.format("WheelMetrics over %.1f s%n", getElapsedSeconds()));
+			for (Cause cause : Cause.values())
+				sb.append("regenerations (").append(cause).append("): ").append(regenerations.get(cause)).append(System.lineSeparator());
+			sb.append("paints: ").append(paints).append(System.lineSeparator());
+			sb.append(String.format("color changes: %d (%.1f/s), listener notifications: %d%n", colorChanges, getEventsPerSecond(), notifications));
+			for (Map.Entry<String, Latency> entry : listeners.entrySet())
+				sb.append("listener ").append(entry.getKey()).append(": ").append(entry.getValue()).append(System.lineSeparator());
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * Enable or disable the recording of the metrics. What was recorded is kept
+	 * @param enabled : true to record the metrics
+	 */
+	public static void setEnabled(boolean enabled){
+		WheelMetrics.enabled = enabled;
+		ColorChangeDispatcher.setListenerTimer(enabled ? WheelMetrics::listenerNotified : null);
+	}
+	/**
+	 * Return if the metrics are recorded
+	 * @return true if the metrics are recorded
+	 */
+	public static boolean isEnabled(){ return enabled; }
+	/**
+	 * Return the metrics recorded since the last reset
+	 * @return a snapshot of the metrics
+	 */
+	public static Snapshot snapshot(){ return new Snapshot(registry); }
+	/**
+	 * Forget everything recorded so far
+	 */
+	public static void reset(){ registry = new Registry(); }
+
+	/**
+	 * Register the metrics in the platform MBean server as <code>hayen.ui:type=WheelMetrics</code>, if they are not already
+	 * @throws IllegalStateException if the registration failed
+	 */
+	public static synchronized void registerMBean(){
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (!server.isRegistered(name))
+				server.registerMBean(new MXBean(), name);
+		} catch (JMException e) {
+			throw new IllegalStateException("cannot register " + OBJECT_NAME, e);
+		}
+	}
+
+	/**
+	 * Record the time a listener took to handle a <code>ColorChangeEvent</code>, given by <code>ColorChangeDispatcher</code> when the metrics are enabled
+	 * @param listener : the listener
+	 * @param nanos : the time it took, in nanoseconds
+	 */
+	static void listenerNotified(ColorChangeListener listener, long nanos){
+		Registry registry = WheelMetrics.registry;
+		LatencyHistogram histogram;
+		synchronized (registry.listeners) {
+			histogram = registry.listeners.get(listener);
+			if (histogram == null)
+				if (registry.listeners.size() < MAX_LISTENERS)
+					registry.listeners.put(listener, histogram = new LatencyHistogram());
+				else
+					histogram = registry.otherListeners;
+		}
+		histogram.record(nanos);
+		registry.notifications.increment();
+	}
+
+	/**
+	 * Return the name under which the durations of a listener are reported
+	 */
+	private static String name(ColorChangeListener listener){
+		String name = listener.getClass().getName();
+		int hidden = name.indexOf('/'); // the address of the class of a lambda changes from one run to the other
+		if (hidden >= 0)
+			name = name.substring(0, hidden);
+		return name + '@' + Integer.toHexString(System.identityHashCode(listener));
+	}
+
+	/**
+	 * Return the time at which an instrumented operation starts
+	 * @return the current time in nanoseconds, or 0 if the metrics are disabled
+	 */
+	static long start(){ return enabled ? System.nanoTime() : 0; }
+	/**
+	 * Record the regeneration of a wheel
+	 * @param cause : why the wheel was generated again
+	 * @param start : the value of <code>start()</code> when the regeneration began
+	 */
+	static void regenerated(Cause cause, long start){
+		if (start != 0)
+			registry.regenerations[cause.ordinal()].record(System.nanoTime() - start);
+	}
+	/**
+	 * Record a paint of a wheel
+	 * @param start : the value of <code>start()</code> when the paint began
+	 */
+	static void painted(long start){
+		if (start != 0)
+			registry.paints.record(System.nanoTime() - start);
+	}
+	/**
+	 * Record a change of the color selected on a wheel
+	 */
+	static void colorChanged(){
+		if (enabled)
+			registry.colorChanges.increment();
+	}
+
+	/**
+	 * JMX view of the metrics
+	 */
+	private static final class MXBean implements WheelMetricsMXBean {
+		@Override
+		public boolean isEnabled(){ return WheelMetrics.isEnabled(); }
+		@Override
+		public void setEnabled(boolean enabled){ WheelMetrics.setEnabled(enabled); }
+		@Override
+		public double getElapsedSeconds(){ return snapshot().getElapsedSeconds(); }
+		@Override
+		public long getRegenerations(){ return snapshot().getRegenerations().getCount(); }
+		@Override
+		public Map<String, Long> getRegenerationsByCause(){
+			Snapshot snapshot = snapshot();
+			LinkedHashMap<String, Long> map = new LinkedHashMap<String, Long>();
+			for (Cause cause : Cause.values())
+				map.put(cause.name(), snapshot.getRegenerations(cause).getCount());
+			return map;
+		}
+		@Override
+		public Map<String, Double> getRegenerationP99MillisByCause(){
+			Snapshot snapshot = snapshot();
+			LinkedHashMap<String, Double> map = new LinkedHashMap<String, Double>();
+			for (Cause cause : Cause.values())
+				map.put(cause.name(), snapshot.getRegenerations(cause).getPercentileMillis(99));
+			return map;
+		}
+		@Override
+		public double getRegenerationMeanMillis(){ return snapshot().getRegenerations().getMeanMillis(); }
+		@Override
+		public double getRegenerationP99Millis(){ return snapshot().getRegenerations().getPercentileMillis(99); }
+		@Override
+		public long getPaints(){ return snapshot().getPaints().getCount(); }
+		@Override
+		public double getPaintMeanMillis(){ return snapshot().getPaints().getMeanMillis(); }
+		@Override
+		public double getPaintP99Millis(){ return snapshot().getPaints().getPercentileMillis(99); }
+		@Override
+		public double getPaintMaxMillis(){ return snapshot().getPaints().getMaxMillis(); }
+		@Override
+		public long getColorChanges(){ return snapshot().getColorChanges(); }
+		@Override
+		public long getNotifications(){ return snapshot().getNotifications(); }
+		@Override
+		public double getEventsPerSecond(){ return snapshot().getEventsPerSecond(); }
+		@Override
+		public Map<String, Double> getListenerP99Millis(){
+			LinkedHashMap<String, Double> map = new LinkedHashMap<String, Double>();
+			for (Map.Entry<String, Latency> entry : snapshot().getListeners().entrySet())
+				map.put(entry.getKey(), entry.getValue().getPercentileMillis(99));
+			return map;
+		}
+		@Override
+		public Map<String, Double> getListenerMaxMillis(){
+			LinkedHashMap<String, Double> map = new LinkedHashMap<String, Double>();
+			for (Map.Entry<String, Latency> entry : snapshot().getListeners().entrySet())
+				map.put(entry.getKey(), entry.getValue().getMaxMillis());
+			return map;
+		}
+		@Override
+		public void reset(){ WheelMetrics.reset(); }
+	}
+}
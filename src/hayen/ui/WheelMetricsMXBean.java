@@ -0,0 +1,44 @@
+package hayen.ui;
+
+import java.util.Map;
+
+/**
+ * Management interface of the <code>WheelMetrics</code>, registered as <code>hayen.ui:type=WheelMetrics</code>.</br>
+ * Durations are in milliseconds, and every attribute covers the time since the metrics were last reset.
+ * @see hayen.ui.WheelMetrics#registerMBean()
+ */
+public interface WheelMetricsMXBean {
+	boolean isEnabled();
+	void setEnabled(boolean enabled);
+	double getElapsedSeconds();
+
+	long getRegenerations();
+	Map<String, Long> getRegenerationsByCause();
+	double getRegenerationMeanMillis();
+	double getRegenerationP99Millis();
+	Map<String, Double> getRegenerationP99MillisByCause();
+
+	long getPaints();
+	double getPaintMeanMillis();
+	double getPaintP99Millis();
+	double getPaintMaxMillis();
+
+	long getColorChanges();
+	long getNotifications();
+	double getEventsPerSecond();
+	/**
+	 * Return the 99th percentile of the time taken to handle a <code>ColorChangeEvent</code>, by listener
+	 * @return the durations, by name of the class of the listener followed by its identity hash code
+	 */
+	Map<String, Double> getListenerP99Millis();
+	/**
+	 * Return the longest time taken to handle a <code>ColorChangeEvent</code>, by listener
+	 * @return the durations, by name of the class of the listener followed by its identity hash code
+	 */
+	Map<String, Double> getListenerMaxMillis();
+
+	/**
+	 * Forget everything recorded so far
+	 */
+	void reset();
+}
@@ -0,0 +1,196 @@
+package hayen.ui;
+
+import hayen.color.ColorConversion;
+import hayen.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Rasterizer of the image of a <code>ColorWheel</code>.</br>
+ * The pixels are taken from the <code>WheelGeometry</code> of the wheel, band by band in parallel on the common fork-join pool, and written as packed ARGB
+ * directly in the <code>DataBufferInt</code> of the image. Since the sliders and the border do not depend on the selected color, a change of <em>value</em>
+ * only has to recolor the chromatic circle. The chromatic circle of a fast geometry is drawn from its fixed-point weights, with integer arithmetic only, within
+ * one unit per channel of the exact colors. A chromatic circle in another color space than HSB is drawn by the bulk conversion of that space.</br>
+ * The edge pixels of an antialiased geometry are drawn with the chromatic circle, by blending its color over the rest of each pixel.</br>
+ * The index and the <em>saturation</em> of the pixels of a band of the circle are gathered from its runs in a scratch buffer kept by each rendering thread,
+ * as long as the widest band drawn by that thread.
+ * @see hayen.ui.ColorWheel
+ * @see hayen.ui.WheelGeometry
+ */
+final class WheelRenderer {
+
+	private WheelRenderer(){}
+
+	/**
+	 * Render the whole wheel in a new <code>TYPE_INT_ARGB</code> image
+	 * @param image : the image to draw in, as wide as the geometry and still transparent
+	 * @param geometry : the geometry of the wheel
+	 * @param value : the <em>value</em> with which the chromatic circle is drawn
+	 */
+	static void render(BufferedImage image, WheelGeometry geometry, float value){
+		render(image, geometry, ColorSpace.HSB, value);
+	}
+	/**
+	 * Render the whole wheel in a new <code>TYPE_INT_ARGB</code> image
+	 * @param image : the image to draw in, as wide as the geometry and still transparent
+	 * @param geometry : the geometry of the wheel
+	 * @param space : the color space of the chromatic circle
+	 * @param value : the <em>value</em> with which the chromatic circle is drawn
+	 */
+	static void render(BufferedImage image, final WheelGeometry geometry, final ColorSpace space, final float value){
+		final int[] pixels = pixels(image);
+		IntStream.range(0, geometry.bands.length).parallel().forEach(i -> {
+			WheelGeometry.Band band = geometry.bands[i];
+			fillStatic(pixels, band);
+			fillColor(pixels, geometry, band, space, value);
+			fillEdges(pixels, band, space, value);
+		});
+	}
+
+	/**
+	 * Redraw the chromatic circle of an image previously rendered with the same geometry
+	 * @param image : the image to update
+	 * @param geometry : the geometry the image was rendered with
+	 * @param value : the new <em>value</em> of the chromatic circle
+	 */
+	static void recolor(BufferedImage image, WheelGeometry geometry, float value){
+		recolor(image, geometry, ColorSpace.HSB, value);
+	}
+	/**
+	 * Redraw the chromatic circle of an image previously rendered with the same geometry
+	 * @param image : the image to update
+	 * @param geometry : the geometry the image was rendered with
+	 * @param space : the color space of the chromatic circle
+	 * @param value : the new <em>value</em> of the chromatic circle
+	 */
+	static void recolor(BufferedImage image, final WheelGeometry geometry, final ColorSpace space, final float value){
+		final int[] pixels = pixels(image);
+		IntStream.range(0, geometry.bands.length).parallel().forEach(i -> {
+			fillColor(pixels, geometry, geometry.bands[i], space, value);
+			fillEdges(pixels, geometry.bands[i], space, value);
+		});
+	}
+
+	/**
+	 * Render the mask used to darken a chromatic circle rendered at full <em>value</em>: opaque black over the circle, transparent everywhere else.</br>
+	 * Drawn over the wheel with an extra alpha of <code>1 - value</code>, it gives the colors of the circle at that <em>value</em>
+	 * @param image : the image to draw in, as wide as the geometry and still transparent
+	 * @param geometry : the geometry of the wheel
+	 */
+	static void renderShade(BufferedImage image, final WheelGeometry geometry){
+		final int[] pixels = pixels(image);
+		IntStream.range(0, geometry.bands.length).parallel().forEach(i -> {
+			WheelGeometry.Band band = geometry.bands[i];
+			for (int y = band.from; y < band.to; y++)
+				Arrays.fill(pixels, y*geometry.diameter + band.colorStart[y - band.from], y*geometry.diameter + band.colorEnd[y - band.from], 0xFF000000);
+			int[] edges = geometry.bands[i].edgeIndex, coverage = geometry.bands[i].edgeCoverage;
+			for (int j = 0; j < edges.length; j++)
+				pixels[edges[j]] = (coverage[j]*255 + WheelGeometry.SAMPLES/2)/WheelGeometry.SAMPLES << 24;
+		});
+	}
+
+	private static int[] pixels(BufferedImage image){
+		return ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+	}
+
+	private static void fillStatic(int[] pixels, WheelGeometry.Band band){
+		int[] index = band.staticIndex, color = band.staticColor;
+		for (int i = 0; i < index.length; i++)
+			pixels[index[i]] = color[i];
+	}
+
+	private static void fillColor(int[] pixels, WheelGeometry geometry, WheelGeometry.Band band, ColorSpace space, float value){
+		int n = band.colorCount;
+		if (n == 0)
+			return;
+		if (space == ColorSpace.HSB && band.weightQT != null) {
+			fillFixed(pixels, geometry, band, value);
+			return;
+		}
+		Scratch scratch = SCRATCH.get().ensure(n);
+		geometry.circle(band, scratch.index, scratch.saturation);
+		if (space != ColorSpace.HSB)
+			space.toRGB(band.hue, scratch.saturation, value, pixels, scratch.index, n);
+		else
+			ColorConversion.toRGB(band.hue, scratch.saturation, value, pixels, scratch.index, n);
+	}
+
+	/**
+	 * Draw the edge pixels of an antialiased geometry: the color of the circle is converted in place, then blended with the premultiplied rest of the pixel
+	 * in proportion of the samples it covers
+	 */
+	private static void fillEdges(int[] pixels, WheelGeometry.Band band, ColorSpace space, float value){
+		int[] index = band.edgeIndex, coverage = band.edgeCoverage, rest = band.edgeStatic;
+		if (index.length == 0)
+			return;
+		if (space != ColorSpace.HSB)
+			space.toRGB(band.edgeHue, band.edgeSaturation, value, pixels, index, index.length);
+		else
+			ColorConversion.toRGB(band.edgeHue, band.edgeSaturation, value, pixels, index, index.length);
+		int n = WheelGeometry.SAMPLES;
+		for (int i = 0; i < index.length; i++) {
+			int color = pixels[index[i]], c = coverage[i], s = rest[i];
+			// channels in units of 1/SAMPLES
+			int a = (s >>> 24)*n + 255*c;
+			int r = ((s >> 16) & 0xFF)*n + ((color >> 16) & 0xFF)*c;
+			int g = ((s >> 8) & 0xFF)*n + ((color >> 8) & 0xFF)*c;
+			int b = (s & 0xFF)*n + (color & 0xFF)*c;
+			pixels[index[i]] = (Math.min(255, (a + n/2)/n) << 24) | (Math.min(255, (r*255 + a/2)/a) << 16) | (Math.min(255, (g*255 + a/2)/a) << 8)
+					| Math.min(255, (b*255 + a/2)/a);
+		}
+	}
+
+	/**
+	 * Draw the chromatic circle of a fast geometry.</br>
+	 * A level is <code>value*255*256 * weight/WEIGHT_ONE</code> rounded, the product fitting in an <code>int</code>: the error is at most 0.006 before
+	 * rounding, so the levels are at most one unit away from <code>Color.HSBtoRGB</code>
+	 */
+	private static void fillFixed(int[] pixels, WheelGeometry geometry, WheelGeometry.Band band, float value){
+		float[] hue = band.hue, saturation = geometry.saturation;
+		int[] weightQT = band.weightQT;
+		int diameter = geometry.diameter, radius = diameter/2;
+		int v8 = Math.round(value * (255 << 8));
+		int v = level(v8, WheelGeometry.WEIGHT_ONE);
+		for (int y = band.from, i = 0; y < band.to; y++) {
+			int ny = radius - y, offset = y*diameter, end = band.colorEnd[y - band.from];
+			for (int x = band.colorStart[y - band.from]; x < end; x++, i++) {
+				int nx = x - radius;
+				int sp = WheelGeometry.sextantP(hue[i], saturation[nx*nx + ny*ny]), qt = weightQT[i];
+				int p = level(v8, sp & 0xFFFF), q = level(v8, qt >>> 16), t = level(v8, qt & 0xFFFF);
+				int rgb;
+				switch (sp >>> 16) {
+					case 0: rgb = (v << 16) | (t << 8) | p; break;
+					case 1: rgb = (q << 16) | (v << 8) | p; break;
+					case 2: rgb = (p << 16) | (v << 8) | t; break;
+					case 3: rgb = (p << 16) | (q << 8) | v; break;
+					case 4: rgb = (t << 16) | (p << 8) | v; break;
+					default: rgb = (v << 16) | (p << 8) | q; break;
+				}
+				pixels[offset + x] = 0xFF000000 | rgb;
+			}
+		}
+	}
+	private static int level(int v8, int weight){
+		return (v8*weight + (1 << 22)) >>> 23;
+	}
+
+	private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+	/**
+	 * Index and <em>saturation</em> of the pixels of the chromatic circle of a band
+	 */
+	private static final class Scratch {
+		int[] index = new int[0];
+		float[] saturation = new float[0];
+
+		Scratch ensure(int n){
+			if (index.length < n) {
+				index = new int[n];
+				saturation = new float[n];
+			}
+			return this;
+		}
+	}
+}
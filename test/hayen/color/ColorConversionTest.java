@@ -0,0 +1,235 @@
+package hayen.color;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks every conversion path, scalar, bulk, split across threads, on buffers and on the SIMD kernel, against <code>Color.HSBtoRGB</code> and
+ * <code>Color.RGBtoHSB</code>, on random colors mixed with the edge cases of each path
+ */
+class ColorConversionTest {
+
+	private static final float[] EDGE_HUES = { 0, -0.0f, 1, Math.nextDown(1.0f), Math.nextUp(0.0f), 0.5f, 1/6.0f, 5/6.0f, Math.nextDown(5/6.0f), -0.25f,
+			-Math.nextDown(1.0f), -1e-8f, 7.3f, 1e7f, -1e7f, 1 << 23, 3e38f, Float.MAX_VALUE, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NaN };
+	private static final float[] EDGE_LEVELS = { 0, -0.0f, 1, Math.nextDown(1.0f), Math.nextUp(1.0f), Math.nextUp(0.0f), 0.5f, -0.5f, 1.5f, Float.NaN };
+	/**
+	 * Lengths of the bulk conversions: not a multiple of any SIMD width, and above the threshold from which they are split
+	 */
+	private static final int[] LENGTHS = { 37, ColorConversion.PARALLEL_THRESHOLD + 1001 };
+	private static final int PAD = 3;
+
+	@Test
+	void scalarConversionToRGBIsTheOneOfAwt(){
+		for (float hue : EDGE_HUES)
+			for (float saturation : EDGE_LEVELS)
+				for (float brightness : EDGE_LEVELS)
+					assertEquals(Color.HSBtoRGB(hue, saturation, brightness), ColorConversion.HSBtoRGB(hue, saturation, brightness),
+							hue + ", " + saturation + ", " + brightness);
+		float[][] hsb = colors(100000, 1);
+		for (int i = 0; i < hsb[0].length; i++)
+			assertEquals(Color.HSBtoRGB(hsb[0][i], hsb[1][i], hsb[2][i]), ColorConversion.HSBtoRGB(hsb[0][i], hsb[1][i], hsb[2][i]), "color " + i);
+	}
+
+	@Test
+	void bulkConversionsToRGBAreTheOnesOfAwt(){
+		for (int length : LENGTHS) {
+			float[][] hsb = colors(length, length);
+			int[] expected = new int[length];
+			for (int i = 0; i < length; i++)
+				expected[i] = Color.HSBtoRGB(hsb[0][i], hsb[1][i], hsb[2][i]);
+
+			int[] argb = new int[length + 2*PAD];
+			ColorConversion.toRGB(pad(hsb[0]), pad(hsb[1]), pad(hsb[2]), PAD, argb, PAD, length);
+			assertRGB(expected, IntBuffer.wrap(argb, PAD, length), "planar arrays");
+
+			float[] interleaved = new float[3*(length + PAD)];
+			for (int i = 0; i < length; i++)
+				for (int c = 0; c < 3; c++)
+					interleaved[3*(PAD + i) + c] = hsb[c][i];
+			argb = new int[length + 2*PAD];
+			ColorConversion.toRGB(interleaved, 3*PAD, argb, PAD, length);
+			assertRGB(expected, IntBuffer.wrap(argb, PAD, length), "interleaved array");
+
+			// every color of the indexed conversion shares one value, and is written backwards
+			int[] index = new int[length];
+			for (float brightness : EDGE_LEVELS) {
+				for (int i = 0; i < length; i++)
+					index[i] = length - 1 - i;
+				argb = new int[length];
+				ColorConversion.toRGB(hsb[0], hsb[1], brightness, argb, index, length);
+				for (int i = 0; i < length; i++)
+					assertEquals(Color.HSBtoRGB(hsb[0][i], hsb[1][i], brightness), argb[length - 1 - i], "indexed, value " + brightness + ", color " + i);
+			}
+
+			for (boolean direct : new boolean[] { false, true }) {
+				IntBuffer out = ints(length, direct);
+				ColorConversion.toRGB(floats(interleaved, 3*PAD, 3*length, direct), out);
+				assertEquals(PAD + length, out.position());
+				assertRGB(expected, out.duplicate().position(PAD), (direct ? "direct" : "heap") + " interleaved buffer");
+
+				out = ints(length, direct);
+				ColorConversion.toRGB(floats(hsb[0], 0, length, direct), floats(hsb[1], 0, length, direct), floats(hsb[2], 0, length, direct), out);
+				assertEquals(PAD + length, out.position());
+				assertRGB(expected, out.duplicate().position(PAD), (direct ? "direct" : "heap") + " planar buffers");
+			}
+		}
+	}
+
+	@Test
+	void vectorKernelIsTheScalarConversion(){
+		ColorConversion.Kernel kernel;
+		try {
+			kernel = (ColorConversion.Kernel)Class.forName("hayen.color.VectorKernel").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) { // no module, or no SIMD register wide enough
+			kernel = null;
+		}
+		assumeTrue(kernel != null, "the Vector API is not available");
+		for (int length : new int[] { 1, 15, 16, 17, 1000 }) {
+			float[][] hsb = colors(length, 31*length);
+			// whole registers of hues just below 1, which fall in the sextant 6, with and without saturation
+			for (int i = 0; i < length/2; i++) {
+				hsb[0][i] = Math.nextDown(1.0f);
+				hsb[1][i] = i < length/4 ? 0 : 0.5f;
+				hsb[2][i] = 0.75f;
+			}
+			int[] argb = new int[length + PAD];
+			kernel.toRGB(pad(hsb[0]), pad(hsb[1]), pad(hsb[2]), PAD, argb, PAD, length);
+			for (int i = 0; i < length; i++)
+				assertEquals(ColorConversion.HSBtoRGB(hsb[0][i], hsb[1][i], hsb[2][i]), argb[PAD + i], "planar, length " + length + ", color " + i);
+
+			int[] index = new int[length];
+			for (int i = 0; i < length; i++)
+				index[i] = length - 1 - i;
+			for (float brightness : EDGE_LEVELS) {
+				argb = new int[length];
+				kernel.toRGB(hsb[0], hsb[1], brightness, argb, index, length);
+				for (int i = 0; i < length; i++)
+					assertEquals(ColorConversion.HSBtoRGB(hsb[0][i], hsb[1][i], brightness), argb[length - 1 - i], "indexed, value " + brightness + ", color " + i);
+			}
+		}
+	}
+
+	@Test
+	void conversionsToHSBAreTheOnesOfAwt(){
+		for (int length : LENGTHS) {
+			Random random = new Random(length);
+			int[] argb = new int[length];
+			for (int i = 0; i < length; i++)
+				argb[i] = random.nextInt();
+			int[] edges = { 0, 0xFFFFFFFF, 0x00FFFFFF, 0xFF808080, 0xFF010101, 0xFFFF0000, 0xFF00FF00, 0xFF0000FF, 0xFFFF00FF, 0xFFFE00FF, 0xFFFF0001 };
+			System.arraycopy(edges, 0, argb, 0, edges.length);
+			float[][] expected = new float[length][];
+			for (int i = 0; i < length; i++) {
+				int c = argb[i];
+				expected[i] = Color.RGBtoHSB((c >> 16) & 0xFF, (c >> 8) & 0xFF, c & 0xFF, null);
+				assertEquals(expected[i][0], ColorConversion.hue(c), "hue of " + Integer.toHexString(c));
+				assertEquals(expected[i][1], ColorConversion.saturation(c), "saturation of " + Integer.toHexString(c));
+				assertEquals(expected[i][2], ColorConversion.brightness(c), "value of " + Integer.toHexString(c));
+			}
+
+			int[] padded = new int[length + PAD];
+			System.arraycopy(argb, 0, padded, PAD, length);
+			float[] hsb = new float[3*(length + PAD)];
+			ColorConversion.toHSB(padded, PAD, hsb, 3*PAD, length);
+			for (int i = 0; i < length; i++)
+				for (int c = 0; c < 3; c++)
+					assertEquals(expected[i][c], hsb[3*(PAD + i) + c], "interleaved array, color " + i);
+
+			float[][] planar = new float[3][length + PAD];
+			ColorConversion.toHSB(padded, PAD, planar[0], planar[1], planar[2], PAD, length);
+			for (int i = 0; i < length; i++)
+				for (int c = 0; c < 3; c++)
+					assertEquals(expected[i][c], planar[c][PAD + i], "planar arrays, color " + i);
+
+			for (boolean direct : new boolean[] { false, true }) {
+				IntBuffer in = ints(length, direct);
+				in.duplicate().put(argb);
+				FloatBuffer out = floats(new float[3*length], 0, 3*length, direct);
+				ColorConversion.toHSB(in, out);
+				assertEquals(PAD + 3*length, out.position());
+				for (int i = 0; i < length; i++)
+					for (int c = 0; c < 3; c++)
+						assertEquals(expected[i][c], out.get(PAD + 3*i + c), (direct ? "direct" : "heap") + " interleaved buffer, color " + i);
+
+				in = ints(length, direct);
+				in.duplicate().put(argb);
+				FloatBuffer[] outs = new FloatBuffer[3];
+				for (int c = 0; c < 3; c++)
+					outs[c] = floats(new float[length], 0, length, direct);
+				ColorConversion.toHSB(in, outs[0], outs[1], outs[2]);
+				for (int i = 0; i < length; i++)
+					for (int c = 0; c < 3; c++)
+						assertEquals(expected[i][c], outs[c].get(PAD + i), (direct ? "direct" : "heap") + " planar buffers, color " + i);
+			}
+		}
+	}
+
+	/**
+	 * Return random colors, with each edge <em>hue</em>, <em>saturation</em> and <em>value</em> spread among them
+	 * @return the <em>hue</em>, <em>saturation</em> and <em>value</em> arrays
+	 */
+	private static float[][] colors(int length, long seed){
+		Random random = new Random(seed);
+		float[][] hsb = new float[3][length];
+		for (int i = 0; i < length; i++) {
+			hsb[0][i] = random.nextFloat()*6 - 3;
+			hsb[1][i] = random.nextFloat();
+			hsb[2][i] = random.nextFloat();
+			if (random.nextInt(8) == 0)
+				hsb[0][i] = EDGE_HUES[random.nextInt(EDGE_HUES.length)];
+			if (random.nextInt(16) == 0)
+				hsb[1][i] = EDGE_LEVELS[random.nextInt(EDGE_LEVELS.length)];
+			if (random.nextInt(16) == 0)
+				hsb[2][i] = EDGE_LEVELS[random.nextInt(EDGE_LEVELS.length)];
+		}
+		return hsb;
+	}
+
+	private static float[] pad(float[] values){
+		float[] padded = new float[values.length + PAD];
+		System.arraycopy(values, 0, padded, PAD, values.length);
+		return padded;
+	}
+
+	/**
+	 * Return a buffer holding values from its position <code>PAD</code>, backed by an array at a non-zero offset or direct
+	 */
+	private static FloatBuffer floats(float[] values, int from, int length, boolean direct){
+		FloatBuffer buffer;
+		if (direct)
+			buffer = ByteBuffer.allocateDirect(4*(length + 2*PAD)).order(ByteOrder.nativeOrder()).asFloatBuffer();
+		else
+			buffer = FloatBuffer.wrap(new float[length + 3*PAD], PAD, length + 2*PAD).slice();
+		buffer.position(PAD);
+		buffer.duplicate().put(values, from, length);
+		buffer.limit(PAD + length);
+		return buffer;
+	}
+	/**
+	 * Return a buffer with room for <code>length</code> colors from its position <code>PAD</code>, backed by an array at a non-zero offset or direct
+	 */
+	private static IntBuffer ints(int length, boolean direct){
+		IntBuffer buffer;
+		if (direct)
+			buffer = ByteBuffer.allocateDirect(4*(length + 2*PAD)).order(ByteOrder.nativeOrder()).asIntBuffer();
+		else
+			buffer = IntBuffer.wrap(new int[length + 3*PAD], PAD, length + 2*PAD).slice();
+		buffer.position(PAD);
+		buffer.limit(PAD + length);
+		return buffer;
+	}
+
+	private static void assertRGB(int[] expected, IntBuffer actual, String path){
+		for (int i = 0; i < expected.length; i++)
+			assertEquals(expected[i], actual.get(actual.position() + i), path + ", color " + i);
+	}
+}
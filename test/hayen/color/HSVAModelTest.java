@@ -0,0 +1,92 @@
+package hayen.color;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HSVAModelTest {
+
+	@Test
+	void lastEventOfRacingSettersCarriesTheFinalColor() throws Exception {
+		for (int round = 0; round < 50; round++) {
+			final HSVAModel model = new HSVAModel();
+			final long[] last = { model.get() };
+			final int[] broken = { 0 };
+			model.addListener((m, previous, current) -> {
+				if (previous != last[0]) // each event goes on from the previous one
+					broken[0]++;
+				last[0] = current;
+				Thread.yield(); // lets the other setter run while an event is delivered
+			});
+			final CyclicBarrier start = new CyclicBarrier(2);
+			Thread[] setters = new Thread[2];
+			for (int t = 0; t < setters.length; t++) {
+				final int id = t;
+				setters[t] = new Thread(() -> {
+					try {
+						start.await();
+					} catch (Exception e) {
+						throw new IllegalStateException(e);
+					}
+					for (int i = 0; i < 2000; i++)
+						model.setColor(id*0.5f + i/5000f, 0.5f, 1, 255);
+				});
+				setters[t].start();
+			}
+			for (Thread setter : setters)
+				setter.join();
+			assertEquals(0, broken[0], "events out of order");
+			assertEquals(model.get(), last[0]);
+		}
+	}
+
+	@Test
+	void colorSetWhileAnEventIsDeliveredIsDeliveredLast() throws Exception {
+		final HSVAModel model = new HSVAModel();
+		final long red = HSVAModel.packARGB(0xFFFF0000), blue = HSVAModel.packARGB(0xFF0000FF);
+		final CountDownLatch delivering = new CountDownLatch(1), blueSet = new CountDownLatch(1);
+		final long[] last = new long[1];
+		model.addListener((m, previous, current) -> {
+			if (current == red) {
+				delivering.countDown();
+				try {
+					blueSet.await(5, TimeUnit.SECONDS); // the other setter changes the color while red is delivered
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			synchronized (last) {
+				last[0] = current;
+			}
+		});
+		Thread first = new Thread(() -> model.set(red));
+		first.start();
+		delivering.await();
+		model.set(blue);
+		blueSet.countDown();
+		first.join();
+		assertEquals(blue, model.get());
+		synchronized (last) {
+			assertEquals(model.get(), last[0]);
+		}
+	}
+
+	@Test
+	void changeMadeByAListenerIsDeliveredAfterTheCurrentEvent(){
+		final HSVAModel model = new HSVAModel();
+		final long red = HSVAModel.packARGB(0xFFFF0000), blue = HSVAModel.packARGB(0xFF0000FF);
+		final StringBuilder events = new StringBuilder();
+		model.addListener((m, previous, current) -> {
+			if (current == red)
+				m.set(blue);
+		});
+		model.addListener((m, previous, current) -> events.append(current == red ? "red " : current == blue ? "blue " : "? "));
+		model.set(red);
+		assertEquals("red blue ", events.toString());
+		assertEquals(blue, model.get());
+	}
+}
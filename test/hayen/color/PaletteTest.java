@@ -0,0 +1,55 @@
+package hayen.color;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PaletteTest {
+
+	@Test
+	void firstLookupOfWhiteFindsItsNearestColor(){
+		Palette palette = new Palette(0xFF112233, 0xFF808080);
+		assertEquals(1, palette.nearestIndex(0xFFFFFFFF));
+		assertEquals(0xFF808080, palette.nearest(0xFFFFFFFF));
+	}
+
+	@Test
+	void repeatedLookupGivesTheSameColor(){
+		Palette palette = new Palette(0xFFFFFFFF, 0xFF000000, 0xFFFF0000);
+		assertEquals(0xFFFFFFFF, palette.nearest(0xFFFFFFFF));
+		assertEquals(0xFFFFFFFF, palette.nearest(0x00FFFFFF)); // alpha ignored, taken from the last lookup
+		assertEquals(0xFFFF0000, palette.nearest(0xFFEE1010));
+		assertEquals(0xFF000000, palette.nearest(0xFF000000));
+	}
+
+	@Test
+	void nearestColorIsTheOneOfABruteForceScan(){
+		Random random = new Random(3);
+		int[] colors = new int[5000];
+		for (int i = 0; i < colors.length; i++)
+			// half of the colors in a few tight clusters, so that whole subtrees are pruned or not
+			colors[i] = i%2 == 0 ? 0xFF000000 | random.nextInt() : (0xFF000000 | (random.nextInt(8) << 21) | (random.nextInt(8) << 13) | (random.nextInt(8) << 5))
+					+ (random.nextInt(4) << 16) + (random.nextInt(4) << 8) + random.nextInt(4);
+		Palette palette = new Palette(colors);
+		float[] lab = new float[3*colors.length];
+		for (int i = 0; i < colors.length; i++)
+			OKLab.fromRGB(colors[i], lab, 3*i);
+		float[] q = new float[3];
+		for (int n = 0; n < 20000; n++) {
+			int argb = n < 1000 ? colors[random.nextInt(colors.length)] : random.nextInt();
+			OKLab.fromRGB(argb, q, 0);
+			float best = Float.POSITIVE_INFINITY;
+			for (int i = 0; i < colors.length; i++)
+				best = Math.min(best, distance(lab, 3*i, q));
+			int index = palette.nearestIndex(argb);
+			assertEquals(best, distance(lab, 3*index, q), "nearest of " + Integer.toHexString(argb));
+		}
+	}
+
+	private static float distance(float[] lab, int i, float[] q){
+		float dl = q[0] - lab[i], da = q[1] - lab[i + 1], db = q[2] - lab[i + 2];
+		return dl*dl + da*da + db*db;
+	}
+}
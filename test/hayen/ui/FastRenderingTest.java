@@ -0,0 +1,48 @@
+package hayen.ui;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The fast rendering mode stays within one unit per channel of the exact rendering, on a few layouts and <em>value</em>s.</br>
+ * The full sweep is run by <code>gradle :benchmarks:checkFastRendering</code>
+ */
+class FastRenderingTest {
+
+	private static final int[] DIAMETERS = {16, 65, 200};
+	private static final int[] ANGLES = {0, 30};
+	private static final float[] VALUES = {0, 0.25f, 0.5f, 0.77f, 1};
+
+	@Test
+	void fastRenderingIsWithinOneUnitOfExactRendering(){
+		for (int diameter : DIAMETERS)
+			for (int degrees : ANGLES) {
+				double angleA = Math.PI/2 + Math.toRadians(degrees), angleB = Math.PI/2 - Math.toRadians(degrees);
+				int widthSlider = Math.max(1, diameter/20), wheelRadius = diameter/2 - widthSlider - 2;
+				WheelGeometry exact = WheelGeometry.build(diameter, wheelRadius, widthSlider, angleA, angleB, 2*(Math.PI - angleA), false);
+				WheelGeometry fast = WheelGeometry.build(diameter, wheelRadius, widthSlider, angleA, angleB, 2*(Math.PI - angleA), true);
+				for (float value : VALUES) {
+					BufferedImage expected = new BufferedImage(diameter, diameter, BufferedImage.TYPE_INT_ARGB);
+					BufferedImage actual = new BufferedImage(diameter, diameter, BufferedImage.TYPE_INT_ARGB);
+					WheelRenderer.render(expected, exact, value);
+					WheelRenderer.render(actual, fast, value);
+					for (int y = 0; y < diameter; y++)
+						for (int x = 0; x < diameter; x++) {
+							int e = expected.getRGB(x, y), a = actual.getRGB(x, y);
+							assertTrue(difference(e, a) <= 1, String.format("diameter %d, angle %d, value %.2f, pixel (%d, %d): %08x instead of %08x",
+									diameter, degrees, value, x, y, a, e));
+						}
+				}
+			}
+	}
+
+	private static int difference(int a, int b){
+		int worst = 0;
+		for (int shift = 0; shift < 32; shift += 8)
+			worst = Math.max(worst, Math.abs(((a >>> shift) & 0xFF) - ((b >>> shift) & 0xFF)));
+		return worst;
+	}
+}
@@ -0,0 +1,43 @@
+package hayen.ui;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that the hit-test index gives exactly the zones and angles computed point by point, whatever the order in which its tiles are filled
+ */
+class WheelHitMapTest {
+
+	@Test
+	void everyPixelMatchesTheDirectComputation(){
+		Random random = new Random(7);
+		for (int diameter : new int[] { 1, 31, 32, 33, 100, 257 })
+			for (double theta : new double[] { 0, Math.PI/12, Math.PI/4, Math.PI/2 - 0.01 }) {
+				int widthSlider = diameter/10, borderSize = 1;
+				int radius = diameter/2, wheelRadius = diameter/2 - widthSlider - borderSize*2;
+				double angleA = Math.PI/2 + theta, angleB = Math.PI/2 - theta;
+				WheelHitMap map = new WheelHitMap(diameter, radius, wheelRadius, widthSlider, borderSize, angleA, angleB);
+				// every pixel and a margin out of the component, in a random order so that tiles are filled from any of their points
+				int margin = 3, side = diameter + 2*margin;
+				int[] order = new int[side*side];
+				for (int i = 0; i < order.length; i++)
+					order[i] = i;
+				for (int i = order.length - 1; i > 0; i--) {
+					int j = random.nextInt(i + 1), swap = order[i];
+					order[i] = order[j];
+					order[j] = swap;
+				}
+				for (int i : order) {
+					int x = i%side - margin, y = i/side - margin;
+					int nx = x - radius, ny = radius - y;
+					double angle = Math.atan2(ny, nx);
+					String at = "diameter " + diameter + ", theta " + theta + " at " + x + "," + y;
+					assertEquals(ColorWheel.getSelection(nx*nx + ny*ny, wheelRadius, widthSlider, borderSize, angleA, angleB, angle), map.zone(x, y), at);
+					assertEquals(angle, map.angle(x, y), at);
+				}
+			}
+	}
+}